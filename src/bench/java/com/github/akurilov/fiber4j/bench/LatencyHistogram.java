@@ -0,0 +1,74 @@
+package com.github.akurilov.fiber4j.bench;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The lock-free log-linear histogram of the nanosecond values. The relative error of the percentile is less than 1/16.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+
+	void record(final long value) {
+		counts.incrementAndGet(bucketIndex(Math.max(0, value)));
+	}
+
+	long count() {
+		long n = 0;
+		for(int i = 0; i < BUCKETS_COUNT; i ++) {
+			n += counts.get(i);
+		}
+		return n;
+	}
+
+	/**
+	 * @param p the percentile, [0; 1]
+	 * @return the upper bound of the bucket containing the percentile, -1 if there are no values
+	 */
+	long percentile(final double p) {
+		final long n = count();
+		if(n == 0) {
+			return -1;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(p * n));
+		long m = 0;
+		for(int i = 0; i < BUCKETS_COUNT; i ++) {
+			m += counts.get(i);
+			if(m >= rank) {
+				return bucketUpperBound(i);
+			}
+		}
+		return bucketUpperBound(BUCKETS_COUNT - 1);
+	}
+
+	long max() {
+		for(int i = BUCKETS_COUNT - 1; i >= 0; i --) {
+			if(counts.get(i) > 0) {
+				return bucketUpperBound(i);
+			}
+		}
+		return -1;
+	}
+
+	private static int bucketIndex(final long value) {
+		if(value < SUB_BUCKETS_COUNT) {
+			return (int) value;
+		}
+		final int magnitude = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+		final int subBucket = (int) (value >>> magnitude) - SUB_BUCKETS_COUNT;
+		return (magnitude + 1) * SUB_BUCKETS_COUNT + subBucket;
+	}
+
+	private static long bucketUpperBound(final int index) {
+		if(index < SUB_BUCKETS_COUNT) {
+			return index;
+		}
+		final int magnitude = index / SUB_BUCKETS_COUNT - 1;
+		final long subBucket = index % SUB_BUCKETS_COUNT + SUB_BUCKETS_COUNT;
+		return ((subBucket + 1) << magnitude) - 1;
+	}
+}
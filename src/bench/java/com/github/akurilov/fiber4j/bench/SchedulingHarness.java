@@ -0,0 +1,338 @@
+package com.github.akurilov.fiber4j.bench;
+
+import com.github.akurilov.fiber4j.FiberTimingMode;
+import com.github.akurilov.fiber4j.FibersExecutor;
+import com.github.akurilov.fiber4j.bench.SyntheticFiber.Kind;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fibers executor scheduling latency and fairness stress harness. For each configured fibers count it runs two
+ * phases:
+ * <ol>
+ *     <li>Idle phase: only the idle fibers are started, the executor workers CPU time is measured.</li>
+ *     <li>Mixed phase: the idle, busy, periodic and overrunning fibers are started, the periodic fibers wake-to-invoke
+ *     latency and the per-fiber invocation rate are measured.</li>
+ * </ol>
+ * The harness is configured with the system properties prefixed with "fiber4j.bench.", see the constants below.
+ */
+public final class SchedulingHarness {
+
+	private static final String PROP_PREFIX = "fiber4j.bench.";
+	/** The comma separated list of the fibers counts, a configuration per each */
+	private static final String PROP_FIBER_COUNTS = "fiberCounts";
+	/** The mixed phase fractions of the idle, busy and periodic fibers, e.g. "idle:0.9,busy:0.02,periodic:0.08" */
+	private static final String PROP_MIX = "mix";
+	/** The absolute count of the overrunning fibers in the mixed phase */
+	private static final String PROP_OVERRUNNING = "overrunning";
+	/** The periodic fibers wake up period */
+	private static final String PROP_PERIOD_MILLIS = "periodMillis";
+	private static final String PROP_WARMUP_SECONDS = "warmupSeconds";
+	private static final String PROP_DURATION_SECONDS = "durationSeconds";
+	/** The fibers executor background mode flag */
+	private static final String PROP_BACKGROUND = "background";
+	private static final String PROP_SEED = "seed";
+	/** The fibers executor timing mode and the sample period for the sampled timing mode */
+	private static final String PROP_TIMING_MODE = "timingMode";
+	private static final String PROP_TIMING_SAMPLE_PERIOD = "timingSamplePeriod";
+
+	private static final String WORKER_THREAD_NAME_PREFIX = "fibers-executor-";
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+	private final FibersExecutor executor;
+	private final Map<Kind, Double> mix;
+	private final int overrunningCount;
+	private final long periodNanos;
+	private final long warmupMillis;
+	private final long durationMillis;
+	private final Random rnd;
+	private final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+
+	private SchedulingHarness(
+		final FibersExecutor executor, final Map<Kind, Double> mix, final int overrunningCount,
+		final long periodNanos, final long warmupMillis, final long durationMillis, final long seed
+	) {
+		this.executor = executor;
+		this.mix = mix;
+		this.overrunningCount = overrunningCount;
+		this.periodNanos = periodNanos;
+		this.warmupMillis = warmupMillis;
+		this.durationMillis = durationMillis;
+		this.rnd = new Random(seed);
+	}
+
+	public static void main(final String... args)
+	throws InterruptedException, IOException {
+
+		final int[] fiberCounts = Arrays
+			.stream(property(PROP_FIBER_COUNTS, "10000,100000,1000000").split(","))
+			.map(String::trim)
+			.mapToInt(Integer::parseInt)
+			.toArray();
+		final Map<Kind, Double> mix = parseMix(property(PROP_MIX, "idle:0.9,busy:0.02,periodic:0.08"));
+		final int overrunningCount = Integer.parseInt(property(PROP_OVERRUNNING, "4"));
+		final long periodMillis = Long.parseLong(property(PROP_PERIOD_MILLIS, "10"));
+		final long warmupSeconds = Long.parseLong(property(PROP_WARMUP_SECONDS, "5"));
+		final long durationSeconds = Long.parseLong(property(PROP_DURATION_SECONDS, "20"));
+		final boolean backgroundFlag = Boolean.parseBoolean(property(PROP_BACKGROUND, "false"));
+		final long seed = Long.parseLong(property(PROP_SEED, "0"));
+		final FiberTimingMode timingMode = FiberTimingMode.valueOf(
+			property(PROP_TIMING_MODE, FiberTimingMode.PRECISE.name()).toUpperCase(Locale.ROOT)
+		);
+		final int timingSamplePeriod = Integer.parseInt(
+			property(PROP_TIMING_SAMPLE_PERIOD, Integer.toString(FibersExecutor.DEFAULT_TIMING_SAMPLE_PERIOD))
+		);
+
+		System.out.println(
+			"Fibers executor scheduling harness: fiber counts " + Arrays.toString(fiberCounts) + ", mix " + mix +
+				", overrunning " + overrunningCount + ", period " + periodMillis + "[ms], warmup " + warmupSeconds +
+				"[s], duration " + durationSeconds + "[s], background " + backgroundFlag + ", timing " + timingMode +
+				", CPUs " + Runtime.getRuntime().availableProcessors()
+		);
+
+		final FibersExecutor executor = new FibersExecutor(backgroundFlag);
+		executor.setTimingMode(timingMode);
+		executor.setTimingSamplePeriod(timingSamplePeriod);
+		final SchedulingHarness harness = new SchedulingHarness(
+			executor, mix, overrunningCount, TimeUnit.MILLISECONDS.toNanos(periodMillis),
+			TimeUnit.SECONDS.toMillis(warmupSeconds), TimeUnit.SECONDS.toMillis(durationSeconds), seed
+		);
+		final double baselineCpuRate = harness.measureCpuRate();
+		System.out.println(String.format(Locale.ROOT, "Workers CPU w/o fibers: %.3f [CPU s/s]", baselineCpuRate));
+
+		final List<String> summary = new ArrayList<>();
+		summary.add(
+			String.format(
+				Locale.ROOT, "%10s %16s %10s %10s %10s %10s %10s %12s %12s %10s", "fibers", "idleCpu[ns/s]",
+				"p50[us]", "p90[us]", "p99[us]", "p99.9[us]", "max[us]", "rate[1/s]", "rateCv", "fairness"
+			)
+		);
+		for(final int fiberCount : fiberCounts) {
+			summary.add(harness.run(fiberCount, baselineCpuRate));
+		}
+
+		System.out.println();
+		summary.forEach(System.out::println);
+	}
+
+	private static String property(final String name, final String defaultValue) {
+		return System.getProperty(PROP_PREFIX + name, defaultValue);
+	}
+
+	private static Map<Kind, Double> parseMix(final String mixSpec) {
+		final Map<Kind, Double> mix = new EnumMap<>(Kind.class);
+		for(final String entry : mixSpec.split(",")) {
+			final String[] kv = entry.split(":");
+			final Kind kind = Kind.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+			if(Kind.OVERRUNNING.equals(kind)) {
+				throw new IllegalArgumentException(
+					"The overrunning fibers count is absolute, use the \"" + PROP_PREFIX + PROP_OVERRUNNING +
+						"\" property instead"
+				);
+			}
+			mix.put(kind, Double.parseDouble(kv[1].trim()));
+		}
+		return mix;
+	}
+
+	private String run(final int fiberCount, final double baselineCpuRate)
+	throws InterruptedException, IOException {
+
+		System.out.println();
+		System.out.println("Configuration: " + fiberCount + " fibers");
+
+		// idle phase
+		final LatencyHistogram noLatencies = new LatencyHistogram();
+		final List<SyntheticFiber> idleFibers = new ArrayList<>(fiberCount);
+		for(int i = 0; i < fiberCount; i ++) {
+			idleFibers.add(new SyntheticFiber(executor, Kind.IDLE, periodNanos, 0, noLatencies));
+		}
+		startAll(idleFibers);
+		final double idleCpuRate = measureCpuRate();
+		stopAll(idleFibers);
+		final double idleCpuPerFiber = Math.max(0, idleCpuRate - baselineCpuRate) * 1e9 / fiberCount;
+		System.out.println(
+			String.format(
+				Locale.ROOT, "Idle phase: workers CPU %.3f [CPU s/s], %.1f [CPU ns/s] per idle fiber", idleCpuRate,
+				idleCpuPerFiber
+			)
+		);
+
+		// mixed phase
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final List<SyntheticFiber> fibers = new ArrayList<>(fiberCount + overrunningCount);
+		int n = 0;
+		for(final Map.Entry<Kind, Double> e : mix.entrySet()) {
+			final Kind kind = e.getKey();
+			final int kindCount = Math.min(fiberCount - n, (int) Math.round(fiberCount * e.getValue()));
+			for(int i = 0; i < kindCount; i ++) {
+				fibers.add(newFiber(kind, latencies));
+			}
+			n += kindCount;
+		}
+		// the fractions sum may be less than 1, fill the rest with the idle fibers
+		for(; n < fiberCount; n ++) {
+			fibers.add(newFiber(Kind.IDLE, latencies));
+		}
+		for(int i = 0; i < overrunningCount; i ++) {
+			fibers.add(newFiber(Kind.OVERRUNNING, latencies));
+		}
+		// spread the kinds over the executor registry
+		Collections.shuffle(fibers, rnd);
+		startAll(fibers);
+		TimeUnit.MILLISECONDS.sleep(warmupMillis);
+
+		final long[] startCounts = new long[fibers.size()];
+		for(int i = 0; i < startCounts.length; i ++) {
+			final SyntheticFiber fiber = fibers.get(i);
+			fiber.recordFlag(true);
+			startCounts[i] = fiber.invocationsCount();
+		}
+		final long startTimeNanos = System.nanoTime();
+		TimeUnit.MILLISECONDS.sleep(durationMillis);
+		final double elapsedSeconds = (System.nanoTime() - startTimeNanos) / 1e9;
+		final double[] rates = new double[startCounts.length];
+		for(int i = 0; i < startCounts.length; i ++) {
+			final SyntheticFiber fiber = fibers.get(i);
+			fiber.recordFlag(false);
+			rates[i] = (fiber.invocationsCount() - startCounts[i]) / elapsedSeconds;
+		}
+		stopAll(fibers);
+
+		final StringBuilder latencyReport = new StringBuilder("Mixed phase: wake-to-invoke latency [us]: count ")
+			.append(latencies.count());
+		for(int i = 0; i < PERCENTILES.length; i ++) {
+			latencyReport
+				.append(", ")
+				.append(PERCENTILE_NAMES[i])
+				.append(' ')
+				.append(micros(latencies.percentile(PERCENTILES[i])));
+		}
+		latencyReport.append(", max ").append(micros(latencies.max()));
+		System.out.println(latencyReport);
+		for(final Kind kind : Kind.values()) {
+			final double[] kindRates = new double[rates.length];
+			int kindCount = 0;
+			for(int i = 0; i < rates.length; i ++) {
+				if(kind.equals(fibers.get(i).kind())) {
+					kindRates[kindCount ++] = rates[i];
+				}
+			}
+			if(kindCount > 0) {
+				System.out.println(
+					"Mixed phase: " + kind.name().toLowerCase(Locale.ROOT) + " fibers (" + kindCount + ") " +
+						rateReport(Arrays.copyOf(kindRates, kindCount))
+				);
+			}
+		}
+		System.out.println("Mixed phase: all fibers (" + rates.length + ") " + rateReport(rates));
+
+		final double mean = mean(rates);
+		return String.format(
+			Locale.ROOT, "%10d %16.1f %10s %10s %10s %10s %10s %12.1f %12.3f %10.4f", fiberCount, idleCpuPerFiber,
+			micros(latencies.percentile(0.5)), micros(latencies.percentile(0.9)), micros(latencies.percentile(0.99)),
+			micros(latencies.percentile(0.999)), micros(latencies.max()), mean, stdDev(rates, mean) / mean,
+			jainIndex(rates)
+		);
+	}
+
+	private SyntheticFiber newFiber(final Kind kind, final LatencyHistogram latencies) {
+		final long phaseNanos = Kind.PERIODIC.equals(kind) ? (long) (rnd.nextDouble() * periodNanos) : 0;
+		return new SyntheticFiber(executor, kind, periodNanos, phaseNanos, latencies);
+	}
+
+	private static void startAll(final List<SyntheticFiber> fibers) {
+		for(final SyntheticFiber fiber : fibers) {
+			fiber.start();
+		}
+	}
+
+	private static void stopAll(final List<SyntheticFiber> fibers)
+	throws IOException {
+		// the same order as started, so each fiber is removed from the registry head
+		for(final SyntheticFiber fiber : fibers) {
+			fiber.close();
+		}
+	}
+
+	/**
+	 * @return the executor workers CPU time per second measured after the warmup
+	 */
+	private double measureCpuRate()
+	throws InterruptedException {
+		TimeUnit.MILLISECONDS.sleep(warmupMillis);
+		final long[] workerThreadIds = Thread
+			.getAllStackTraces()
+			.keySet()
+			.stream()
+			.filter(t -> t.getName().startsWith(WORKER_THREAD_NAME_PREFIX))
+			.mapToLong(Thread::getId)
+			.toArray();
+		final long startCpuNanos = cpuTime(workerThreadIds);
+		final long startTimeNanos = System.nanoTime();
+		TimeUnit.MILLISECONDS.sleep(durationMillis);
+		return (double) (cpuTime(workerThreadIds) - startCpuNanos) / (System.nanoTime() - startTimeNanos);
+	}
+
+	private long cpuTime(final long[] threadIds) {
+		long t = 0;
+		for(final long threadId : threadIds) {
+			t += Math.max(0, threadMxBean.getThreadCpuTime(threadId));
+		}
+		return t;
+	}
+
+	private static String rateReport(final double[] rates) {
+		final double mean = mean(rates);
+		final double stdDev = stdDev(rates, mean);
+		return String.format(
+			Locale.ROOT, "invocation rate [1/s]: mean %.1f, std dev %.1f, cv %.3f, fairness index %.4f", mean, stdDev,
+			stdDev / mean, jainIndex(rates)
+		);
+	}
+
+	private static String micros(final long nanos) {
+		return nanos < 0 ? "n/a" : Long.toString(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	private static double mean(final double[] values) {
+		double sum = 0;
+		for(final double v : values) {
+			sum += v;
+		}
+		return sum / values.length;
+	}
+
+	private static double stdDev(final double[] values, final double mean) {
+		double sum = 0;
+		for(final double v : values) {
+			sum += (v - mean) * (v - mean);
+		}
+		return Math.sqrt(sum / values.length);
+	}
+
+	/**
+	 * @return Jain's fairness index: 1 if all the values are equal, 1/n if only one value is not zero
+	 */
+	private static double jainIndex(final double[] values) {
+		double sum = 0;
+		double sumOfSquares = 0;
+		for(final double v : values) {
+			sum += v;
+			sumOfSquares += v * v;
+		}
+		return sumOfSquares == 0 ? 1 : sum * sum / (values.length * sumOfSquares);
+	}
+}
@@ -0,0 +1,106 @@
+package com.github.akurilov.fiber4j.bench;
+
+import com.github.akurilov.fiber4j.ExclusiveFiberBase;
+import com.github.akurilov.fiber4j.Fiber;
+import com.github.akurilov.fiber4j.FibersExecutor;
+
+import java.io.IOException;
+
+/**
+ * The fiber simulating the typical workload kind
+ */
+final class SyntheticFiber
+extends ExclusiveFiberBase {
+
+	enum Kind {
+		/** Has nothing to do, like a fiber waiting for the input */
+		IDLE,
+		/** Does some short work on each invocation */
+		BUSY,
+		/** Wakes up periodically, the wake-to-invoke latency is recorded */
+		PERIODIC,
+		/** Exceeds the soft invocation duration limit on each invocation */
+		OVERRUNNING,
+	}
+
+	static final long BUSY_WORK_NANOS = 5_000;
+	static final long OVERRUN_WORK_NANOS = 2 * Fiber.SOFT_DURATION_LIMIT_NANOS;
+
+	private final Kind kind;
+	private final long periodNanos;
+	private final LatencyHistogram latencies;
+
+	private volatile boolean recordFlag = false;
+	private volatile long invocationsCount = 0;
+	private long dueTimeNanos;
+
+	/**
+	 * @param executor the fibers executor
+	 * @param kind the workload kind
+	 * @param periodNanos the wake up period, used by the periodic fiber only
+	 * @param phaseNanos the first wake up delay, used by the periodic fiber only
+	 * @param latencies the histogram to record the wake-to-invoke latencies to
+	 */
+	SyntheticFiber(
+		final FibersExecutor executor, final Kind kind, final long periodNanos, final long phaseNanos,
+		final LatencyHistogram latencies
+	) {
+		super(executor);
+		this.kind = kind;
+		this.periodNanos = periodNanos;
+		this.latencies = latencies;
+		this.dueTimeNanos = System.nanoTime() + phaseNanos;
+	}
+
+	Kind kind() {
+		return kind;
+	}
+
+	long invocationsCount() {
+		return invocationsCount;
+	}
+
+	void recordFlag(final boolean recordFlag) {
+		this.recordFlag = recordFlag;
+	}
+
+	@Override
+	protected final void invokeTimedExclusively(final long startTimeNanos) {
+		// the only writer thread at a time
+		invocationsCount ++;
+		switch(kind) {
+			case BUSY:
+				spin(startTimeNanos, BUSY_WORK_NANOS);
+				break;
+			case PERIODIC:
+				final long lateNanos = startTimeNanos - dueTimeNanos;
+				if(lateNanos >= 0) {
+					if(recordFlag) {
+						latencies.record(lateNanos);
+					}
+					dueTimeNanos += periodNanos;
+					if(dueTimeNanos <= startTimeNanos) {
+						// the wake ups missed completely are not accounted, don't try to catch up
+						dueTimeNanos = startTimeNanos + periodNanos;
+					}
+				}
+				break;
+			case OVERRUNNING:
+				spin(startTimeNanos, OVERRUN_WORK_NANOS);
+				break;
+			default:
+				break;
+		}
+	}
+
+	private static void spin(final long startTimeNanos, final long durationNanos) {
+		while(System.nanoTime() - startTimeNanos < durationNanos) {
+			Thread.onSpinWait();
+		}
+	}
+
+	@Override
+	protected final void doClose()
+	throws IOException {
+	}
+}
@@ -0,0 +1,344 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.io.Input;
+import com.github.akurilov.commons.io.Output;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The fiber implementation which acts like the output coalescing the items into the batches for the wrapped output.
+ * Useful when the wrapped output is remote and each call is a round-trip. A batch is sent using a single
+ * {@link Output#put(List)} call when it's full or when the coalescing window elapsed since the first item was put.
+ * Several batches may be sent concurrently, up to the configured in-flight limit. The batch (or its remaining part) is
+ * retried if the wrapped output is not reachable or doesn't accept all the items. The failed attempt delays any sending
+ * by the exponentially growing backoff. The batch which failed the max count of the attempts is dropped and the
+ * failure is handled by the executor's {@link FiberFailurePolicy}.
+ */
+public final class BatchingOutputFiber<T>
+extends FiberBase
+implements OutputFiber<T> {
+
+	private static final Logger LOG = Logger.getLogger(BatchingOutputFiber.class.getName());
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 20;
+	public static final long RETRY_DELAY_MIN_NANOS = 1_000_000L;
+	public static final long RETRY_DELAY_MAX_NANOS = 1_000_000_000L;
+
+	/**
+	 * The batch (or its remaining part) to send again
+	 */
+	private static final class RetryBatch<T> {
+
+		private final List<T> items;
+		private final int failedAttemptsCount;
+
+		private RetryBatch(final List<T> items, final int failedAttemptsCount) {
+			this.items = items;
+			this.failedAttemptsCount = failedAttemptsCount;
+		}
+	}
+
+	private final Output<T> output;
+	private final int batchSize;
+	private final long windowNanos;
+	private final int maxAttempts;
+	private final Lock batchLock = new ReentrantLock();
+	private final BlockingQueue<List<T>> sealedBatches;
+	private final Queue<RetryBatch<T>> retryBatches = new ConcurrentLinkedQueue<>();
+	private final Semaphore inFlightPermits;
+	private final AtomicInteger pendingBatchesCount = new AtomicInteger(0);
+
+	private List<T> batch;
+	private long batchStartTimeNanos;
+
+	private volatile long retryTimeNanos = System.nanoTime();
+	/**
+	 * @param executor the fibers executor
+	 * @param output the wrapped output
+	 * @param batchSize the max count of the items in a batch
+	 * @param window the max time to wait for the batch to fill since the first item was put
+	 * @param timeUnit the window time unit
+	 * @param maxInFlight the max count of the batches being sent concurrently, also the max count of the full batches
+	 *                    waiting to be sent
+	 */
+	public BatchingOutputFiber(
+		final FibersExecutor executor, final Output<T> output, final int batchSize, final long window,
+		final TimeUnit timeUnit, final int maxInFlight
+	) {
+		this(executor, output, batchSize, window, timeUnit, maxInFlight, DEFAULT_MAX_ATTEMPTS);
+	}
+
+	/**
+	 * @param executor the fibers executor
+	 * @param output the wrapped output
+	 * @param batchSize the max count of the items in a batch
+	 * @param window the max time to wait for the batch to fill since the first item was put
+	 * @param timeUnit the window time unit
+	 * @param maxInFlight the max count of the batches being sent concurrently, also the max count of the full batches
+	 *                    waiting to be sent
+	 * @param maxAttempts the max count of the failed attempts to send a batch, the batch is dropped after
+	 */
+	public BatchingOutputFiber(
+		final FibersExecutor executor, final Output<T> output, final int batchSize, final long window,
+		final TimeUnit timeUnit, final int maxInFlight, final int maxAttempts
+	) {
+		super(executor);
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("The max attempts count should be positive, got: " + maxAttempts);
+		}
+		this.output = output;
+		this.batchSize = batchSize;
+		this.windowNanos = timeUnit.toNanos(window);
+		this.maxAttempts = maxAttempts;
+		this.sealedBatches = new ArrayBlockingQueue<>(maxInFlight);
+		this.inFlightPermits = new Semaphore(maxInFlight);
+		this.batch = new ArrayList<>(batchSize);
+	}
+
+	@Override
+	public final boolean put(final T item)
+	throws IOException {
+
+		if(isStopped()) {
+			throw new EOFException();
+		}
+
+		if(batchLock.tryLock()) {
+			try {
+				if(batch.size() == batchSize && !seal()) {
+					return false;
+				}
+				if(batch.isEmpty()) {
+					batchStartTimeNanos = System.nanoTime();
+				}
+				batch.add(item);
+				if(batch.size() == batchSize) {
+					seal();
+				}
+				return true;
+			} finally {
+				batchLock.unlock();
+			}
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public final int put(final List<T> srcBuff, final int from, final int to)
+	throws IOException {
+
+		if(isStopped()) {
+			throw new EOFException();
+		}
+
+		int offset = from;
+
+		if(batchLock.tryLock()) {
+			try {
+				int m;
+				while(offset < to) {
+					if(batch.size() == batchSize && !seal()) {
+						break;
+					}
+					if(batch.isEmpty()) {
+						batchStartTimeNanos = System.nanoTime();
+					}
+					m = Math.min(to - offset, batchSize - batch.size());
+					batch.addAll(srcBuff.subList(offset, offset + m));
+					offset += m;
+					if(batch.size() == batchSize) {
+						seal();
+					}
+				}
+			} finally {
+				batchLock.unlock();
+			}
+		}
+
+		return offset - from;
+	}
+
+	@Override
+	public final int put(final List<T> buffer)
+	throws IOException {
+		return put(buffer, 0, buffer.size());
+	}
+
+	/**
+	 * Should be invoked holding the batch lock
+	 * @return true if the current batch is enqueued to be sent, false if the queue is full
+	 */
+	private boolean seal() {
+		if(sealedBatches.offer(batch)) {
+			pendingBatchesCount.incrementAndGet();
+			batch = new ArrayList<>(batchSize);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected final void invokeTimed(final long startTimeNanos) {
+
+		// the output failed recently, don't call it until the backoff elapses
+		if(startTimeNanos - retryTimeNanos < 0) {
+			return;
+		}
+
+		if(!inFlightPermits.tryAcquire()) {
+			return;
+		}
+
+		try {
+			final RetryBatch<T> retryBatch = retryBatches.poll();
+			if(retryBatch != null) {
+				send(retryBatch.items, retryBatch.failedAttemptsCount);
+				return;
+			}
+			List<T> nextBatch = sealedBatches.poll();
+			if(nextBatch == null && batchLock.tryLock()) {
+				// send the incomplete batch if the window elapsed or no more items are expected
+				try {
+					if(!batch.isEmpty() && (!isStarted() || startTimeNanos - batchStartTimeNanos >= windowNanos)) {
+						nextBatch = batch;
+						pendingBatchesCount.incrementAndGet();
+						batch = new ArrayList<>(batchSize);
+					}
+				} finally {
+					batchLock.unlock();
+				}
+			}
+			if(nextBatch != null) {
+				send(nextBatch, 0);
+			}
+		} finally {
+			inFlightPermits.release();
+		}
+	}
+
+	/**
+	 * @param nextBatch the batch to send
+	 * @param failedAttemptsCount the count of the previous failed attempts to send the batch
+	 */
+	private void send(final List<T> nextBatch, final int failedAttemptsCount) {
+		try {
+			final int n = output.put(nextBatch);
+			if(n == 0) {
+				retry(nextBatch, failedAttemptsCount, null);
+			} else if(n < nextBatch.size()) {
+				// some progress is made, send the remaining part w/o delay
+				retryBatches.add(new RetryBatch<>(new ArrayList<>(nextBatch.subList(n, nextBatch.size())), 0));
+			} else {
+				pendingBatchesCount.decrementAndGet();
+			}
+		} catch(final NoSuchObjectException | ConnectException e) {
+			LOG.log(Level.FINE, "Fiber \"" + this + "\": the output is not reachable", e);
+			retry(nextBatch, failedAttemptsCount, e);
+		} catch(final EOFException e) {
+			closeAfterEof();
+		} catch(final RemoteException e) {
+			if(e.getCause() instanceof EOFException) {
+				closeAfterEof();
+			} else {
+				LOG.log(Level.FINE, "Fiber \"" + this + "\": invocation failure", e);
+				retry(nextBatch, failedAttemptsCount, e);
+			}
+		} catch(final IOException e) {
+			LOG.log(Level.FINE, "Fiber \"" + this + "\": invocation failure", e);
+			retry(nextBatch, failedAttemptsCount, e);
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException if the batch is dropped, to be handled by the executor's failure policy
+	 */
+	private void retry(final List<T> nextBatch, final int failedAttemptsCount, final IOException cause)
+	throws IllegalStateException {
+		final int n = failedAttemptsCount + 1;
+		if(n < maxAttempts) {
+			final long delayNanos = Math.min(RETRY_DELAY_MAX_NANOS, RETRY_DELAY_MIN_NANOS << Math.min(n - 1, 30));
+			retryTimeNanos = System.nanoTime() + delayNanos;
+			retryBatches.add(new RetryBatch<>(nextBatch, n));
+		} else {
+			pendingBatchesCount.decrementAndGet();
+			throw new IllegalStateException(
+				"Fiber \"" + this + "\": dropped the batch of " + nextBatch.size() + " items after " + n +
+					" failed attempts",
+				cause
+			);
+		}
+	}
+
+	private void closeAfterEof() {
+		try {
+			close();
+		} catch(final IOException e) {
+			LOG.log(Level.WARNING, "Failed to close self after EOF", e);
+		}
+	}
+
+	private boolean isEmpty() {
+		batchLock.lock();
+		try {
+			return batch.isEmpty() && pendingBatchesCount.get() == 0;
+		} finally {
+			batchLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean await(final long timeout, final TimeUnit timeUnit)
+	throws IllegalStateException, InterruptedException {
+		if(isShutdown()) {
+			final long invokeTimeMillis = System.currentTimeMillis();
+			final long timeOutMillis = timeUnit.toMillis(timeout);
+			while(timeOutMillis > System.currentTimeMillis() - invokeTimeMillis) {
+				if(isEmpty()) {
+					return true;
+				}
+				LockSupport.parkNanos(1);
+			}
+			return false;
+		} else {
+			return super.await(timeout, timeUnit);
+		}
+	}
+
+	@Override
+	public final Input<T> getInput() {
+		throw new AssertionError("Shouldn't be invoked");
+	}
+
+	@Override
+	protected final void doClose()
+	throws IOException {
+		batchLock.lock();
+		try {
+			batch.clear();
+		} finally {
+			batchLock.unlock();
+		}
+		sealedBatches.clear();
+		retryBatches.clear();
+		pendingBatchesCount.set(0);
+	}
+}
@@ -0,0 +1,72 @@
+package com.github.akurilov.fiber4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the NUMA topology exposed by the Linux kernel via sysfs.
+ */
+final class CpuTopology {
+
+	private static final Logger LOG = Logger.getLogger(CpuTopology.class.getName());
+
+	private static final Path NODES_DIR = Paths.get("/sys/devices/system/node");
+	private static final String NODE_DIR_PREFIX = "node";
+	private static final String CPU_LIST_FILE_NAME = "cpulist";
+
+	private CpuTopology() {
+	}
+
+	/**
+	 * @return the list of the NUMA nodes CPU ids ordered by the node id, empty if the topology is not available
+	 */
+	static List<int[]> nodeCpus() {
+		final TreeMap<Integer, int[]> cpusByNode = new TreeMap<>();
+		try(final DirectoryStream<Path> nodeDirs = Files.newDirectoryStream(NODES_DIR, NODE_DIR_PREFIX + "[0-9]*")) {
+			for(final Path nodeDir : nodeDirs) {
+				final int nodeId = Integer.parseInt(nodeDir.getFileName().toString().substring(NODE_DIR_PREFIX.length()));
+				final int[] cpus = parseCpuList(Files.readString(nodeDir.resolve(CPU_LIST_FILE_NAME)));
+				// skip the memory-only nodes
+				if(cpus.length > 0) {
+					cpusByNode.put(nodeId, cpus);
+				}
+			}
+		} catch(final IOException | RuntimeException e) {
+			LOG.log(Level.FINE, "Failed to read the NUMA topology", e);
+			return List.of();
+		}
+		return new ArrayList<>(cpusByNode.values());
+	}
+
+	/**
+	 * @param cpuList the CPU list in the kernel format, e.g. "0-3,8-11"
+	 * @return the CPU ids
+	 */
+	static int[] parseCpuList(final String cpuList) {
+		final List<Integer> cpus = new ArrayList<>();
+		for(final String range : cpuList.trim().split(",")) {
+			if(range.isEmpty()) {
+				continue;
+			}
+			final int dashPos = range.indexOf('-');
+			if(dashPos < 0) {
+				cpus.add(Integer.parseInt(range));
+			} else {
+				final int first = Integer.parseInt(range.substring(0, dashPos));
+				final int last = Integer.parseInt(range.substring(dashPos + 1));
+				for(int i = first; i <= last; i ++) {
+					cpus.add(i);
+				}
+			}
+		}
+		return cpus.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
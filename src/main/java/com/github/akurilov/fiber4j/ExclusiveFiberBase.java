@@ -5,12 +5,18 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The base class for a fiber implementation which may not be executed in parallel.
+ * <p>
+ * The invocation is skipped if the fiber is being invoked by another thread. The fiber having the new work arriving
+ * while it's being invoked may call {@link #requestRerun()}, so the invoking thread invokes it once more before
+ * returning while the soft invocation duration limit is not exceeded.
  */
 public abstract class ExclusiveFiberBase
 extends FiberBase {
 
 	private final Lock invocationLock;
 
+	private volatile boolean rerunRequestedFlag = false;
+
 	protected ExclusiveFiberBase(final FibersExecutor executor) {
 		this(executor, new ReentrantLock());
 	}
@@ -22,13 +28,37 @@ extends FiberBase {
 
 	@Override
 	protected final void invokeTimed(final long startTimeNanos) {
-		if(invocationLock.tryLock()) {
-			try {
-				invokeTimedExclusively(startTimeNanos);
-			} finally {
-				invocationLock.unlock();
+		do {
+			if(invocationLock.tryLock()) {
+				try {
+					do {
+						if(rerunRequestedFlag) {
+							rerunRequestedFlag = false;
+						}
+						invokeTimedExclusively(startTimeNanos);
+					} while(rerunRequired(startTimeNanos));
+				} finally {
+					invocationLock.unlock();
+				}
+			} else {
+				FiberLockSkipEvent.emit(this);
+				return;
 			}
-		}
+			// the re-run may be requested after the last check but before the lock is released
+		} while(rerunRequired(startTimeNanos));
+	}
+
+	private boolean rerunRequired(final long startTimeNanos) {
+		return rerunRequestedFlag && !isStopped() && !isClosed() && !budgetExceeded(startTimeNanos);
+	}
+
+	/**
+	 * Signal that the new work is pending, e.g. should be called by the producer after the new item is available. If
+	 * the fiber is being invoked, the invoking thread invokes it once more before returning, otherwise the work is done
+	 * by the next invocation. The method may be called by any thread.
+	 */
+	protected final void requestRerun() {
+		rerunRequestedFlag = true;
 	}
 
 	/**
@@ -21,6 +21,10 @@ implements Fiber {
 		this.executor = executor;
 	}
 
+	final FibersExecutor executor() {
+		return executor;
+	}
+
 	@Override
 	protected void doStart() {
 		executor.start(this);
@@ -34,15 +38,43 @@ implements Fiber {
 		long t = System.nanoTime();
 		invokeTimed(t);
 		t = System.nanoTime() - t;
+		if(t > FiberSlowInvocationEvent.THRESHOLD_NANOS) {
+			FiberSlowInvocationEvent.emit(this, t);
+		}
 		if(t > DEBUG_DURATION_LIMIT_NANOS) {
-			LOG.log(
-				t > WARN_DURATION_LIMIT_NANOS ? Level.WARNING : Level.FINE,
-				"Fiber \"" + this + "\" invocation duration (" + TimeUnit.NANOSECONDS.toMillis(t) + "[ms]) exceeds "
-					+ "the limit (" + TimeUnit.NANOSECONDS.toMillis(SOFT_DURATION_LIMIT_NANOS) + "[ms])"
-			);
+			logDuration(this, t);
 		}
 	}
 
+	/**
+	 * Invokes w/o timing, the invocation duration is not measured.
+	 * @param startTimeNanos the time when the invocation started, see {@link FiberTimingMode}
+	 */
+	final void invoke(final long startTimeNanos) {
+		invokeTimed(startTimeNanos);
+	}
+
+	/**
+	 * Invokes the fiber w/o timing if it's a {@link FiberBase} instance, the other fibers are invoked as usual
+	 * @param fiber the fiber to invoke
+	 * @param startTimeNanos the time when the invocation started, see {@link FiberTimingMode}
+	 */
+	static void invoke(final Fiber fiber, final long startTimeNanos) {
+		if(fiber instanceof FiberBase) {
+			((FiberBase) fiber).invoke(startTimeNanos);
+		} else {
+			fiber.invoke();
+		}
+	}
+
+	static void logDuration(final Object fiber, final long durationNanos) {
+		LOG.log(
+			durationNanos > WARN_DURATION_LIMIT_NANOS ? Level.WARNING : Level.FINE,
+			"Fiber \"" + fiber + "\" invocation duration (" + TimeUnit.NANOSECONDS.toMillis(durationNanos)
+				+ "[ms]) exceeds the limit (" + TimeUnit.NANOSECONDS.toMillis(SOFT_DURATION_LIMIT_NANOS) + "[ms])"
+		);
+	}
+
 	/**
 	 * The method implementation should use the start time to check its own duration in order to not
 	 * to exceed the invocation time limit
@@ -50,6 +82,15 @@ implements Fiber {
 	 */
 	protected abstract void invokeTimed(final long startTimeNanos);
 
+	/**
+	 * The helper method for the fiber implementations which split the work inside the invocation
+	 * @param startTimeNanos the time when the invocation started
+	 * @return true if the invocation duration exceeds the soft limit already, false otherwise
+	 */
+	protected static boolean budgetExceeded(final long startTimeNanos) {
+		return System.nanoTime() - startTimeNanos > SOFT_DURATION_LIMIT_NANOS;
+	}
+
 	@Override
 	protected void doStop() {
 		executor.stop(this);
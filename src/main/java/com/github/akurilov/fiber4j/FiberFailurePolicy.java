@@ -0,0 +1,25 @@
+package com.github.akurilov.fiber4j;
+
+/**
+ * Defines what the fibers executor does with a fiber which invocation failed with an exception or an error. The
+ * executor worker keeps running regardless of the policy. The {@link VirtualMachineError} is not handled by the policy
+ * and is rethrown.
+ */
+public enum FiberFailurePolicy {
+
+	/**
+	 * Log the failure and keep invoking the fiber, the default one
+	 */
+	LOG,
+
+	/**
+	 * Log the failure and stop the fiber
+	 */
+	STOP,
+
+	/**
+	 * Log the failure and remove the fiber from the executor registry without changing its state. The fiber may be
+	 * returned back to the registry using {@link FibersExecutor#release(Fiber)}. The lightweight fibers are stopped.
+	 */
+	QUARANTINE,
+}
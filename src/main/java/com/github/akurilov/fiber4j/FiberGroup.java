@@ -0,0 +1,259 @@
+package com.github.akurilov.fiber4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The named group of the fibers sharing the executor with the other fibers and groups. The group is the fiber itself
+ * which invokes its started members while the group's quota for the current accounting period is not exhausted. The
+ * quota is the share of the total executor workers time. The group collects its own metrics and allows to start, shut
+ * down, stop and close its members at once.
+ * <p>
+ * A fiber should be added to the group before it's started. The group should be started to invoke its members.
+ * The group invocation stops when its soft duration limit or the quota is exceeded, the next invocation resumes from
+ * the member following the last invoked one. The started members are moved to the executor when the group is closed.
+ * If the executor timing mode is not {@link FiberTimingMode#PRECISE} the members are not measured, each member gets the
+ * time read after the previous member as its start time.
+ */
+public final class FiberGroup
+extends FiberBase {
+
+	private static final Logger LOG = Logger.getLogger(FiberGroup.class.getName());
+
+	/**
+	 * The quota accounting period
+	 */
+	public static final long QUOTA_PERIOD_NANOS = 100_000_000L;
+
+	private final String name;
+	private final double share;
+	private final Set<Fiber> members = ConcurrentHashMap.newKeySet();
+	private final AtomicLong periodStartTimeNanos = new AtomicLong(System.nanoTime());
+	private final AtomicLong periodConsumedNanos = new AtomicLong(0);
+	private final LongAdder consumedNanos = new LongAdder();
+	private final LongAdder invocationsCount = new LongAdder();
+	private final LongAdder throttledCount = new LongAdder();
+	private final Object activeMembersLock = new Object();
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	// copy-on-write, modified holding the activeMembersLock only
+	private volatile Fiber[] activeMembers = new Fiber[0];
+
+	private interface MemberAction {
+		void apply(final Fiber member)
+		throws Exception;
+	}
+
+	/**
+	 * @param executor the fibers executor
+	 * @param name the group name
+	 * @param share the share of the total executor workers time per accounting period, (0; 1]
+	 */
+	public FiberGroup(final FibersExecutor executor, final String name, final double share) {
+		super(executor);
+		if(share <= 0 || share > 1) {
+			throw new IllegalArgumentException("The share should be in the range of (0; 1], got: " + share);
+		}
+		this.name = name;
+		this.share = share;
+	}
+
+	/**
+	 * Add the fiber which is not started yet to the group
+	 * @param fiber the fiber to add
+	 * @throws IllegalStateException if the fiber is started already or is a member of another group
+	 */
+	public void add(final Fiber fiber)
+	throws IllegalStateException {
+		if(fiber.isStarted() || fiber.isShutdown()) {
+			throw new IllegalStateException("Fiber \"" + fiber + "\" is started already");
+		}
+		executor().join(fiber, this);
+		members.add(fiber);
+	}
+
+	/**
+	 * Remove the fiber from the group. The started fiber is moved to the executor registry.
+	 * @param fiber the fiber to remove
+	 * @return true if the fiber was the group member, false otherwise
+	 */
+	public boolean remove(final Fiber fiber) {
+		if(members.remove(fiber)) {
+			final boolean activeFlag = deactivate(fiber);
+			executor().leave(fiber, this);
+			if(activeFlag) {
+				executor().start(fiber);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	void activate(final Fiber member) {
+		synchronized(activeMembersLock) {
+			final Fiber[] prevActiveMembers = activeMembers;
+			final Fiber[] nextActiveMembers = Arrays.copyOf(prevActiveMembers, prevActiveMembers.length + 1);
+			nextActiveMembers[prevActiveMembers.length] = member;
+			activeMembers = nextActiveMembers;
+		}
+	}
+
+	boolean deactivate(final Fiber member) {
+		synchronized(activeMembersLock) {
+			final Fiber[] prevActiveMembers = activeMembers;
+			for(int i = 0; i < prevActiveMembers.length; i ++) {
+				if(prevActiveMembers[i] == member) {
+					final Fiber[] nextActiveMembers = new Fiber[prevActiveMembers.length - 1];
+					System.arraycopy(prevActiveMembers, 0, nextActiveMembers, 0, i);
+					System.arraycopy(
+						prevActiveMembers, i + 1, nextActiveMembers, i, prevActiveMembers.length - i - 1
+					);
+					activeMembers = nextActiveMembers;
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Override
+	protected final void invokeTimed(final long startTimeNanos) {
+
+		final long periodStart = periodStartTimeNanos.get();
+		if(
+			startTimeNanos - periodStart >= QUOTA_PERIOD_NANOS
+				&& periodStartTimeNanos.compareAndSet(periodStart, startTimeNanos)
+		) {
+			periodConsumedNanos.set(0);
+		}
+		final long quotaNanos = quotaNanos();
+		if(periodConsumedNanos.get() >= quotaNanos) {
+			throttledCount.increment();
+			return;
+		}
+
+		// the members are measured only if the executor measures each invocation
+		final boolean preciseFlag = FiberTimingMode.PRECISE == executor().getTimingMode();
+		// the workers sweeping the group concurrently share the cursor so each one resumes from the next member
+		final Fiber[] activeMembersSnapshot = activeMembers;
+		final int activeMembersCount = activeMembersSnapshot.length;
+		long t = 0;
+		long memberStartTimeNanos = startTimeNanos;
+		Fiber member;
+		for(int i = 0; i < activeMembersCount; i ++) {
+			member = activeMembersSnapshot[Math.floorMod(cursor.getAndIncrement(), activeMembersCount)];
+			try {
+				if(member.isStarted() || member.isShutdown()) {
+					if(preciseFlag) {
+						member.invoke();
+					} else {
+						FiberBase.invoke(member, memberStartTimeNanos);
+					}
+					invocationsCount.increment();
+				}
+			} catch(final VirtualMachineError e) {
+				throw e;
+			} catch(final Throwable e) {
+				executor().handleFailure(member, e);
+			}
+			memberStartTimeNanos = System.nanoTime();
+			t = memberStartTimeNanos - startTimeNanos;
+			if(t > SOFT_DURATION_LIMIT_NANOS || periodConsumedNanos.get() + t >= quotaNanos) {
+				break;
+			}
+		}
+
+		periodConsumedNanos.addAndGet(t);
+		consumedNanos.add(t);
+	}
+
+	private long quotaNanos() {
+		return (long) (share * QUOTA_PERIOD_NANOS * executor().threadCount());
+	}
+
+	public void startAll() {
+		applyToAll(Fiber::start, "start");
+	}
+
+	public void shutdownAll() {
+		applyToAll(Fiber::shutdown, "shutdown");
+	}
+
+	public void stopAll() {
+		applyToAll(Fiber::stop, "stop");
+	}
+
+	public void closeAll() {
+		applyToAll(Fiber::close, "close");
+	}
+
+	private void applyToAll(final MemberAction action, final String actionName) {
+		for(final Fiber member : members) {
+			try {
+				action.apply(member);
+			} catch(final Exception e) {
+				LOG.log(Level.FINE, "Group \"" + name + "\": failed to " + actionName + " the fiber \"" + member + "\"", e);
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getShare() {
+		return share;
+	}
+
+	/**
+	 * @return the count of the group members
+	 */
+	public int size() {
+		return members.size();
+	}
+
+	/**
+	 * @return the count of the group members invocations
+	 */
+	public long getInvocationsCount() {
+		return invocationsCount.sum();
+	}
+
+	/**
+	 * @return the total time spent invoking the group members
+	 */
+	public long getConsumedNanos() {
+		return consumedNanos.sum();
+	}
+
+	/**
+	 * @return the count of the group invocations skipped because the quota was exhausted
+	 */
+	public long getThrottledCount() {
+		return throttledCount.sum();
+	}
+
+	@Override
+	public final String toString() {
+		return "FiberGroup(" + name + ")";
+	}
+
+	@Override
+	protected final void doClose()
+	throws IOException {
+		// the started members are moved to the executor registry, otherwise they would be never invoked again
+		for(final Fiber member : members) {
+			remove(member);
+		}
+		synchronized(activeMembersLock) {
+			activeMembers = new Fiber[0];
+		}
+	}
+}
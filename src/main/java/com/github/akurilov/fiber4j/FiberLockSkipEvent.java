@@ -0,0 +1,40 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event emitted when an exclusive fiber invocation is skipped because the fiber is being invoked
+ * by another thread. Disabled by default due to the potentially high rate.
+ */
+@Name("com.github.akurilov.fiber4j.LockSkip")
+@Label("Exclusive Fiber Invocation Skip")
+@Category("Fibers")
+@Enabled(false)
+@StackTrace(false)
+final class FiberLockSkipEvent
+extends Event {
+
+	@Label("Fiber")
+	String fiber;
+
+	@Label("Fiber Class")
+	Class<?> fiberClass;
+
+	@Label("Fiber Identity Hash Code")
+	int fiberId;
+
+	static void emit(final Object fiber) {
+		final FiberLockSkipEvent evt = new FiberLockSkipEvent();
+		if(evt.shouldCommit()) {
+			evt.fiber = String.valueOf(fiber);
+			evt.fiberClass = fiber.getClass();
+			evt.fiberId = System.identityHashCode(fiber);
+			evt.commit();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder event emitted when a fiber invocation duration exceeds the configured threshold. The threshold
+ * may be set using the "com.github.akurilov.fiber4j.slowInvocationThresholdNanos" system property, the default value
+ * is {@link Fiber#SOFT_DURATION_LIMIT_NANOS}. The event is committed after the invocation so its start time is the
+ * invocation end time.
+ */
+@Name("com.github.akurilov.fiber4j.SlowInvocation")
+@Label("Slow Fiber Invocation")
+@Category("Fibers")
+@StackTrace(false)
+final class FiberSlowInvocationEvent
+extends Event {
+
+	static final String THRESHOLD_PROPERTY = "com.github.akurilov.fiber4j.slowInvocationThresholdNanos";
+	static final long THRESHOLD_NANOS = thresholdNanos();
+
+	@Label("Fiber")
+	String fiber;
+
+	@Label("Fiber Class")
+	Class<?> fiberClass;
+
+	@Label("Fiber Identity Hash Code")
+	int fiberId;
+
+	@Label("Invocation Duration")
+	@Description("The fiber invocation duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long invocationDuration;
+
+	/**
+	 * @return the threshold set by the system property or the default one if not set
+	 */
+	static long thresholdNanos() {
+		return Long.getLong(THRESHOLD_PROPERTY, Fiber.SOFT_DURATION_LIMIT_NANOS);
+	}
+
+	static void emit(final Object fiber, final long durationNanos) {
+		final FiberSlowInvocationEvent evt = new FiberSlowInvocationEvent();
+		if(evt.shouldCommit()) {
+			evt.fiber = String.valueOf(fiber);
+			evt.fiberClass = fiber.getClass();
+			evt.fiberId = System.identityHashCode(fiber);
+			evt.invocationDuration = durationNanos;
+			evt.commit();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.github.akurilov.fiber4j;
+
+/**
+ * Defines how the fibers executor workers measure the fiber invocations. Reading the clock is not free, especially on
+ * the virtual machines with the slow clock source, so the executor invoking many tiny fibers may read it less often.
+ */
+public enum FiberTimingMode {
+
+	/**
+	 * Read the clock before and after each invocation. Each slow invocation is reported.
+	 */
+	PRECISE,
+
+	/**
+	 * Read the clock once per invocation: the time read after an invocation is both its end time and the start time of
+	 * the next invocation, i.e. the timestamps are chained. The clock reads count is halved while each fiber still gets
+	 * its own start time and the slow invocations are still reported. The accounting is skewed: the worker's own time
+	 * spent between the invocations (the registry iteration, the yielding of the background worker) is charged to the
+	 * next invocation, both to its budget and to its measured duration. The time spent to handle a failure is not
+	 * charged. The fiber group members get the chained timestamps too, but the group's own bookkeeping is charged to
+	 * them the same way.
+	 */
+	CHAINED,
+
+	/**
+	 * Measure every Nth invocation precisely, see {@link FibersExecutor#setTimingSamplePeriod(int)}. The other
+	 * invocations get the time read after the last measured invocation. Only the measured slow invocations are
+	 * reported, the persistently slow fiber is reported eventually.
+	 */
+	SAMPLED,
+}
@@ -2,36 +2,102 @@ package com.github.akurilov.fiber4j;
 
 import com.github.akurilov.commons.concurrent.ContextAwareThreadFactory;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * The fibers executor. It's suggested to use a single/global/shared executor instance per
  * application. By default the background fibers executor is created. The normal coroutines
  * executor with higher scheduling priority may be created using the custom constructor with
  * <i>false</i> argument.
+ * <p>
+ * The partitioned scheduling splits the fibers registry into the partitions and binds each worker to a single
+ * partition. The partitions count is the NUMA nodes count. A fiber started by a worker's fiber is registered in the same
+ * partition, otherwise the partitions are selected in the round-robin way. Each partition has at least one worker,
+ * the remaining workers are distributed in proportion to the nodes CPU counts. The worker threads are not pinned to the
+ * CPUs, so the partitions are the logical shards of the registry reducing the contention, no memory locality is
+ * guaranteed. There is no work stealing: a partition's fibers are invoked by its own workers only, so the workers of
+ * the other partitions may idle while a single partition is overloaded.
  */
 public class FibersExecutor {
 
 	private final static Logger LOG = Logger.getLogger(FibersExecutor.class.getName());
 
+	/**
+	 * The default count of the invocations per a measured one in the {@link FiberTimingMode#SAMPLED} mode
+	 */
+	public static final int DEFAULT_TIMING_SAMPLE_PERIOD = 64;
+
 	private final ThreadPoolExecutor executor;
 	private final boolean backgroundFlag;
-	private final List<FibersExecutorTask> workers = new ArrayList<>();
-	private final Queue<Fiber> fibers = new ConcurrentLinkedQueue<>();
+	private final List<FibersExecutorTask> workers = new CopyOnWriteArrayList<>();
+	private final List<FibersExecutorTask> compensatingWorkers = new CopyOnWriteArrayList<>();
+	private final FibersPartition[] partitions;
+	private final int[] workerPartitionIndices; // maps the worker index to the partition index
+	private final AtomicLong partitionCounter = new AtomicLong(0);
+	private final Queue<Fiber> quarantinedFibers = new ConcurrentLinkedQueue<>();
+	private final Map<Fiber, FiberGroup> groupMemberships = new ConcurrentHashMap<>();
+	private final LongAdder failuresCount = new LongAdder();
+
+	private volatile FiberFailurePolicy failurePolicy = FiberFailurePolicy.LOG;
+	private volatile FiberTimingMode timingMode = FiberTimingMode.PRECISE;
+	private volatile int timingSamplePeriod = DEFAULT_TIMING_SAMPLE_PERIOD;
 
 	public FibersExecutor() {
 		this(true);
 	}
 
 	public FibersExecutor(final boolean backgroundFlag) {
-		final int svcThreadCount = Runtime.getRuntime().availableProcessors();
+		this(backgroundFlag, false);
+	}
+
+	/**
+	 * @param backgroundFlag true if the workers should yield after each fiber invocation
+	 * @param topologyAwareFlag true if the partitioned scheduling should be used, one partition per NUMA node. Works on
+	 *                          Linux only, falls back to the single partition if the topology is not available
+	 */
+	public FibersExecutor(final boolean backgroundFlag, final boolean topologyAwareFlag) {
+		this(backgroundFlag, topologyAwareFlag ? CpuTopology.nodeCpus() : null);
+	}
+
+	/**
+	 * @param backgroundFlag true if the workers should yield after each fiber invocation
+	 * @param nodeCpus the CPU ids per NUMA node, empty if the topology is not available, null if the partitioned
+	 *                 scheduling is not used
+	 */
+	FibersExecutor(final boolean backgroundFlag, final List<int[]> nodeCpus) {
+		if(nodeCpus != null && nodeCpus.size() > 1) {
+			LOG.info("Partitioned scheduling, partitions count: " + nodeCpus.size());
+			partitions = new FibersPartition[nodeCpus.size()];
+			workerPartitionIndices = workerPartitionIndices(nodeCpus.stream().mapToInt(cpus -> cpus.length).toArray());
+		} else {
+			if(nodeCpus != null) {
+				LOG.info("Partitioned scheduling is not effective, single NUMA node or the topology is not available");
+			}
+			partitions = new FibersPartition[1];
+			workerPartitionIndices = new int[] { 0 };
+		}
+		for(int i = 0; i < partitions.length; i ++) {
+			partitions[i] = new FibersPartition(i, new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>());
+		}
+		// at least one worker per partition, the first workers are mapped to the distinct partitions
+		final int svcThreadCount = Math.max(partitions.length, Runtime.getRuntime().availableProcessors());
 		executor = new ThreadPoolExecutor(
 			svcThreadCount, svcThreadCount, 0, TimeUnit.DAYS, new ArrayBlockingQueue<>(1),
 			new ContextAwareThreadFactory("fibers-executor-", true, null)
@@ -39,37 +105,251 @@ public class FibersExecutor {
 		this.backgroundFlag = backgroundFlag;
 		for(int i = 0; i < svcThreadCount; i ++) {
 			final FibersExecutorTask svcWorkerTask = new FibersExecutorTask(
-				fibers, backgroundFlag
+				this, workerPartition(i), backgroundFlag
 			);
-			executor.submit(svcWorkerTask);
-			workers.add(svcWorkerTask);
+			// start before submit, otherwise the worker may exit immediately
 			svcWorkerTask.start();
+			workers.add(svcWorkerTask);
+			executor.submit(svcWorkerTask);
 		}
 	}
 
 	public void start(final Fiber fiber) {
-		fibers.add(fiber);
+		final FiberGroup group = groupMemberships.get(fiber);
+		if(group == null) {
+			selectPartition().fibers.add(fiber);
+		} else {
+			group.activate(fiber);
+		}
 	}
 
 	public void stop(final Fiber fiber) {
-		fibers.remove(fiber);
+		if(!remove(fiber)) {
+			quarantinedFibers.remove(fiber);
+		}
+	}
+
+	/**
+	 * Maps the workers to the partitions. The first workers are mapped to the distinct partitions, so any first N
+	 * workers cover min(N, partitions count) partitions. The remaining workers are mapped in proportion to the nodes
+	 * CPU counts, interleaved.
+	 * @param nodeCpuCounts the CPU count per each NUMA node
+	 * @return the partition index per each worker index, the length is the total CPU count
+	 */
+	static int[] workerPartitionIndices(final int[] nodeCpuCounts) {
+		final int partitionsCount = nodeCpuCounts.length;
+		final int[] remainingSlots = IntStream
+			.range(0, partitionsCount)
+			.boxed()
+			.flatMap(
+				i -> IntStream
+					.range(0, nodeCpuCounts[i] - 1)
+					.mapToObj(j -> new double[] { (j + 0.5) / (nodeCpuCounts[i] - 1), i })
+			)
+			.sorted(Comparator.comparingDouble(slot -> slot[0]))
+			.mapToInt(slot -> (int) slot[1])
+			.toArray();
+		return IntStream.concat(IntStream.range(0, partitionsCount), IntStream.of(remainingSlots)).toArray();
+	}
+
+	private FibersPartition workerPartition(final int workerIndex) {
+		return partitions[workerPartitionIndices[workerIndex % workerPartitionIndices.length]];
+	}
+
+	private FibersPartition selectPartition() {
+		if(partitions.length == 1) {
+			return partitions[0];
+		}
+		final FibersExecutorTask currentWorker = FibersExecutorTask.current();
+		if(currentWorker != null && currentWorker.supervisor() == this) {
+			return currentWorker.partition();
+		}
+		// each partition has at least one worker
+		return partitions[(int) (partitionCounter.getAndIncrement() % partitions.length)];
 	}
 
-	public void setThreadCount(final int threadCount) {
-		final int newThreadCount = threadCount > 0 ?
-			threadCount : Runtime.getRuntime().availableProcessors();
-		final int oldThreadCount = executor.getCorePoolSize();
+	private boolean remove(final Fiber fiber) {
+		final FiberGroup group = groupMemberships.get(fiber);
+		if(group != null) {
+			return group.deactivate(fiber);
+		}
+		for(final FibersPartition partition : partitions) {
+			if(partition.fibers.remove(fiber)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public FiberFailurePolicy getFailurePolicy() {
+		return failurePolicy;
+	}
+
+	/**
+	 * @param failurePolicy the policy to apply to a fiber which invocation failed, {@link FiberFailurePolicy#LOG} by
+	 *                      default
+	 */
+	public void setFailurePolicy(final FiberFailurePolicy failurePolicy) {
+		this.failurePolicy = failurePolicy;
+	}
+
+	public FiberTimingMode getTimingMode() {
+		return timingMode;
+	}
+
+	/**
+	 * @param timingMode the way to measure the fiber invocations, {@link FiberTimingMode#PRECISE} by default. The
+	 *                   workers apply the new mode since their next scheduling round
+	 */
+	public void setTimingMode(final FiberTimingMode timingMode) {
+		this.timingMode = timingMode;
+	}
+
+	public int getTimingSamplePeriod() {
+		return timingSamplePeriod;
+	}
+
+	/**
+	 * @param timingSamplePeriod the count of the invocations per a measured one in the
+	 *                           {@link FiberTimingMode#SAMPLED} mode, {@link #DEFAULT_TIMING_SAMPLE_PERIOD} by default
+	 * @throws IllegalArgumentException if the period is less than 1
+	 */
+	public void setTimingSamplePeriod(final int timingSamplePeriod)
+	throws IllegalArgumentException {
+		if(timingSamplePeriod < 1) {
+			throw new IllegalArgumentException("The sample period should be positive, got: " + timingSamplePeriod);
+		}
+		this.timingSamplePeriod = timingSamplePeriod;
+	}
+
+	/**
+	 * @return the count of the failed fiber invocations since the executor creation
+	 */
+	public long getFailuresCount() {
+		return failuresCount.sum();
+	}
+
+	/**
+	 * @return the fibers removed from the registry due to the failure
+	 * @see FiberFailurePolicy#QUARANTINE
+	 */
+	public Collection<Fiber> getQuarantinedFibers() {
+		return Collections.unmodifiableCollection(quarantinedFibers);
+	}
+
+	/**
+	 * Return the quarantined fiber back to the registry
+	 * @param fiber the quarantined fiber
+	 * @return true if the fiber was quarantined, false otherwise
+	 */
+	public boolean release(final Fiber fiber) {
+		if(quarantinedFibers.remove(fiber)) {
+			start(fiber);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Make the fiber the group member, should be done before the fiber is started
+	 */
+	void join(final Fiber fiber, final FiberGroup group) {
+		final FiberGroup prevGroup = groupMemberships.putIfAbsent(fiber, group);
+		if(prevGroup != null && prevGroup != group) {
+			throw new IllegalStateException("Fiber \"" + fiber + "\" is a member of the group \"" + prevGroup + "\"");
+		}
+	}
+
+	void leave(final Fiber fiber, final FiberGroup group) {
+		groupMemberships.remove(fiber, group);
+	}
+
+	/**
+	 * @return the count of the regular workers
+	 */
+	int threadCount() {
+		return workers.size();
+	}
+
+	void handleFailure(final Fiber fiber, final Throwable cause) {
+		failuresCount.increment();
+		final FiberFailurePolicy policy = failurePolicy;
+		LOG.log(Level.WARNING, "Fiber \"" + fiber + "\" failed, applying the " + policy + " policy", cause);
+		switch(policy) {
+			case STOP:
+				try {
+					fiber.stop();
+				} catch(final Exception e) {
+					LOG.log(Level.FINE, "Failed to stop the fiber \"" + fiber + "\"", e);
+					remove(fiber);
+				}
+				break;
+			case QUARANTINE:
+				if(remove(fiber)) {
+					quarantinedFibers.add(fiber);
+				}
+				break;
+		}
+	}
+
+	void handleFailure(final LightFiber fiber, final Throwable cause) {
+		failuresCount.increment();
+		final FiberFailurePolicy policy = failurePolicy;
+		LOG.log(Level.WARNING, "Fiber \"" + fiber + "\" failed, applying the " + policy + " policy", cause);
+		if(FiberFailurePolicy.LOG != policy) {
+			fiber.stop();
+		}
+	}
+
+	/**
+	 * Create and start the lightweight fiber
+	 * @param fn the function to invoke
+	 * @return the fiber handle which may be used to stop the fiber
+	 */
+	public LightFiber submit(final Runnable fn) {
+		return submit(new LightFiber(fn, false));
+	}
+
+	/**
+	 * Create and start the lightweight fiber
+	 * @param fn the function to invoke, accepts the time when the invocation started
+	 * @return the fiber handle which may be used to stop the fiber
+	 */
+	public LightFiber submit(final LongConsumer fn) {
+		return submit(fn, false);
+	}
+
+	/**
+	 * Create and start the lightweight fiber
+	 * @param fn the function to invoke, accepts the time when the invocation started
+	 * @param exclusiveFlag true if the function may not be invoked in parallel
+	 * @return the fiber handle which may be used to stop the fiber
+	 */
+	public LightFiber submit(final LongConsumer fn, final boolean exclusiveFlag) {
+		return submit(new LightFiber(fn, exclusiveFlag));
+	}
+
+	private LightFiber submit(final LightFiber fiber) {
+		selectPartition().lightFibers.add(fiber);
+		return fiber;
+	}
+
+	public synchronized void setThreadCount(final int threadCount) {
+		// at least one worker per partition
+		final int newThreadCount = Math.max(
+			partitions.length, threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors()
+		);
+		final int oldThreadCount = workers.size();
 		if(newThreadCount != oldThreadCount) {
-			executor.setCorePoolSize(newThreadCount);
-			executor.setMaximumPoolSize(newThreadCount);
+			resizePool(newThreadCount + compensatingWorkers.size());
 			if(newThreadCount > oldThreadCount) {
 				for(int i = oldThreadCount; i < newThreadCount; i ++) {
 					final FibersExecutorTask execTask = new FibersExecutorTask(
-						fibers, backgroundFlag
+						this, workerPartition(i), backgroundFlag
 					);
-					executor.submit(execTask);
-					workers.add(execTask);
 					execTask.start();
+					workers.add(execTask);
+					executor.submit(execTask);
 				}
 			} else { // less, remove some active service worker tasks
 				try {
@@ -82,4 +362,54 @@ public class FibersExecutor {
 			}
 		}
 	}
+
+	List<FibersExecutorTask> workers() {
+		return workers;
+	}
+
+	List<FibersExecutorTask> compensatingWorkers() {
+		return compensatingWorkers;
+	}
+
+	/**
+	 * Start the additional worker to preserve the throughput while another worker is stuck
+	 * @param stuckWorker the stuck worker, the additional one will iterate the same partition
+	 * @return the started worker task, null if the stuck worker is not a regular one or each regular worker is
+	 *         compensated already
+	 */
+	synchronized FibersExecutorTask startCompensatingWorker(final FibersExecutorTask stuckWorker) {
+		// a compensating worker is never compensated, otherwise a non-exclusive fiber blocking each worker entering it
+		// would make the threads count grow w/o bound
+		if(!workers.contains(stuckWorker) || compensatingWorkers.size() >= workers.size()) {
+			return null;
+		}
+		resizePool(workers.size() + compensatingWorkers.size() + 1);
+		final FibersExecutorTask execTask = new FibersExecutorTask(this, stuckWorker.partition(), backgroundFlag);
+		execTask.start();
+		compensatingWorkers.add(execTask);
+		executor.submit(execTask);
+		return execTask;
+	}
+
+	synchronized void stopCompensatingWorker(final FibersExecutorTask execTask) {
+		if(compensatingWorkers.remove(execTask)) {
+			try {
+				execTask.close();
+			} catch(final Exception e) {
+				LOG.log(Level.WARNING, "Failed to stop the compensating worker", e);
+			}
+			resizePool(workers.size() + compensatingWorkers.size());
+		}
+	}
+
+	private void resizePool(final int size) {
+		// the core pool size may not exceed the max pool size at any moment
+		if(size > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(size);
+			executor.setCorePoolSize(size);
+		} else {
+			executor.setCorePoolSize(size);
+			executor.setMaximumPoolSize(size);
+		}
+	}
 }
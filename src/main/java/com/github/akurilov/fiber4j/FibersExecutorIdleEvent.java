@@ -0,0 +1,18 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event covering the period while a fibers executor worker has no fibers to invoke.
+ */
+@Name("com.github.akurilov.fiber4j.ExecutorIdle")
+@Label("Fibers Executor Idle")
+@Category("Fibers")
+@StackTrace(false)
+final class FibersExecutorIdleEvent
+extends Event {
+}
@@ -0,0 +1,24 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event covering a single fibers executor worker round, i.e. the iteration over all the registered
+ * fibers. Disabled by default due to the potentially high rate.
+ */
+@Name("com.github.akurilov.fiber4j.ExecutorRound")
+@Label("Fibers Executor Round")
+@Category("Fibers")
+@Enabled(false)
+@StackTrace(false)
+final class FibersExecutorRoundEvent
+extends Event {
+
+	@Label("Invocations Count")
+	int invocationsCount;
+}
@@ -2,7 +2,12 @@ package com.github.akurilov.fiber4j;
 
 import com.github.akurilov.commons.concurrent.AsyncRunnableBase;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -13,41 +18,274 @@ implements Runnable {
 
 	private final static Logger LOG = Logger.getLogger(FibersExecutorTask.class.getName());
 
+	private static final ThreadLocal<FibersExecutorTask> CURRENT = new ThreadLocal<>();
+
+	private final FibersExecutor supervisor;
+	private final FibersPartition partition;
 	private final Queue<Fiber> fibers;
+	private final Queue<LightFiber> lightFibers;
 	private final boolean backgroundFlag;
 
+	// the slots read by the watchdog, written w/o the memory fences
+	private static final VarHandle CURRENT_FIBER;
+	private static final VarHandle INVOCATIONS_COUNT;
+
+	static {
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			CURRENT_FIBER = lookup.findVarHandle(FibersExecutorTask.class, "currentFiber", Object.class);
+			INVOCATIONS_COUNT = lookup.findVarHandle(FibersExecutorTask.class, "invocationsCount", long.class);
+		} catch(final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private volatile Thread thread = null;
+	private Object currentFiber = null;
+	private long invocationsCount = 0;
+
+	// the timing state, accessed by the worker thread only
+	private FiberTimingMode timingMode = FiberTimingMode.PRECISE;
+	private int timingSamplePeriod = FibersExecutor.DEFAULT_TIMING_SAMPLE_PERIOD;
+	private int sampleCountdown = 0;
+	private long clockNanos;
+
+	/**
+	 * Creates the unsupervised worker task which logs the failures and keeps invoking the failed fibers, see
+	 * {@link FiberFailurePolicy#LOG}
+	 */
 	public FibersExecutorTask(
 		final Queue<Fiber> fibers, final boolean backgroundFlag
 	) {
-		this.fibers = fibers;
+		this(null, new FibersPartition(0, fibers, new ConcurrentLinkedQueue<>()), backgroundFlag);
+	}
+
+	FibersExecutorTask(
+		final FibersExecutor supervisor, final FibersPartition partition, final boolean backgroundFlag
+	) {
+		this.supervisor = supervisor;
+		this.partition = partition;
+		this.fibers = partition.fibers;
+		this.lightFibers = partition.lightFibers;
 		this.backgroundFlag = backgroundFlag;
 	}
 
 	@Override
 	public final void run() {
+		thread = Thread.currentThread();
+		CURRENT.set(this);
+		try {
+			runRounds();
+		} finally {
+			CURRENT.remove();
+		}
+	}
+
+	private void runRounds() {
+		FibersExecutorIdleEvent idleEvent = null;
+		FibersExecutorRoundEvent roundEvent;
+		int roundInvocationsCount;
 		while(isStarted()) {
-			if(fibers.size() == 0) {
+			if(fibers.isEmpty() && lightFibers.isEmpty()) {
+				if(idleEvent == null) {
+					idleEvent = new FibersExecutorIdleEvent();
+					idleEvent.begin();
+				}
 				try {
 					Thread.sleep(1);
 				} catch(final InterruptedException e) {
 					break;
 				}
 			} else {
+				if(idleEvent != null) {
+					idleEvent.commit();
+					idleEvent = null;
+				}
+				roundEvent = new FibersExecutorRoundEvent();
+				roundEvent.begin();
+				roundInvocationsCount = 0;
+				beginRound();
 				for(final Fiber nextFiber : fibers) {
+					if(nextFiber.isStarted() || nextFiber.isShutdown()) {
+						roundInvocationsCount ++;
+						CURRENT_FIBER.setOpaque(this, nextFiber);
+						try {
+							if(measureNext()) {
+								nextFiber.invoke();
+								measured();
+							} else {
+								FiberBase.invoke(nextFiber, clockNanos);
+							}
+							chained(nextFiber);
+						} catch(final VirtualMachineError e) {
+							throw e; // the JVM is broken, don't try to recover
+						} catch(final Throwable t) {
+							chained(nextFiber);
+							handleFailure(nextFiber, t);
+							failureHandled();
+						}
+					}
+					invoked();
+					if(backgroundFlag) {
+						LockSupport.parkNanos(1);
+					}
+				}
+				LightFiber nextLightFiber;
+				for(final Iterator<LightFiber> i = lightFibers.iterator(); i.hasNext();) {
+					nextLightFiber = i.next();
+					if(nextLightFiber.isStopped()) {
+						i.remove();
+						continue;
+					}
 					try {
-						if(nextFiber.isStarted() || nextFiber.isShutdown()) {
-							nextFiber.invoke();
+						roundInvocationsCount ++;
+						CURRENT_FIBER.setOpaque(this, nextLightFiber);
+						if(measureNext()) {
+							nextLightFiber.invoke();
+							measured();
+						} else {
+							nextLightFiber.invoke(clockNanos);
 						}
-					} catch(final RuntimeException e) {
-						throw e; // don't catch the unchecked exceptions
+						chained(nextLightFiber);
+					} catch(final VirtualMachineError e) {
+						throw e; // the JVM is broken, don't try to recover
 					} catch(final Throwable t) {
-						LOG.log(Level.WARNING, "Fiber \"" + nextFiber + "\" failed", t);
+						chained(nextLightFiber);
+						handleFailure(nextLightFiber, t);
+						failureHandled();
 					}
+					invoked();
 					if(backgroundFlag) {
 						LockSupport.parkNanos(1);
 					}
 				}
+				if(roundEvent.shouldCommit()) {
+					roundEvent.invocationsCount = roundInvocationsCount;
+					roundEvent.commit();
+				}
+			}
+		}
+	}
+
+	private void beginRound() {
+		if(supervisor != null) {
+			timingMode = supervisor.getTimingMode();
+			timingSamplePeriod = supervisor.getTimingSamplePeriod();
+		}
+		if(FiberTimingMode.PRECISE != timingMode) {
+			clockNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return true if the next invocation should be measured, false if it should get the cached clock value
+	 */
+	private boolean measureNext() {
+		switch(timingMode) {
+			case CHAINED:
+				return false;
+			case SAMPLED:
+				if(-- sampleCountdown > 0) {
+					return false;
+				}
+				// randomize the distance to the next measured invocation so the same fibers are not measured in each
+				// round, the mean distance is the sample period
+				sampleCountdown = 1 + ThreadLocalRandom.current().nextInt(2 * timingSamplePeriod - 1);
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	private void measured() {
+		if(FiberTimingMode.SAMPLED == timingMode) {
+			clockNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * In the {@link FiberTimingMode#CHAINED} mode the clock is read once after each invocation: the value is both the
+	 * end of the completed invocation and the start of the next one
+	 * @param fiber the fiber invoked with the cached clock value
+	 */
+	private void chained(final Object fiber) {
+		if(FiberTimingMode.CHAINED == timingMode) {
+			final long t = System.nanoTime();
+			final long durationNanos = t - clockNanos;
+			clockNanos = t;
+			if(durationNanos > FiberSlowInvocationEvent.THRESHOLD_NANOS) {
+				FiberSlowInvocationEvent.emit(fiber, durationNanos);
+			}
+			if(durationNanos > Fiber.DEBUG_DURATION_LIMIT_NANOS) {
+				FiberBase.logDuration(fiber, durationNanos);
 			}
 		}
 	}
+
+	/**
+	 * Don't charge the failure handling time to the next invocation, the failures are rare so the extra clock read is
+	 * affordable
+	 */
+	private void failureHandled() {
+		if(FiberTimingMode.PRECISE != timingMode) {
+			clockNanos = System.nanoTime();
+		}
+	}
+
+	private void invoked() {
+		CURRENT_FIBER.setOpaque(this, null);
+		INVOCATIONS_COUNT.setOpaque(this, invocationsCount + 1);
+	}
+
+	/**
+	 * @return the worker task running in the current thread, null if the current thread is not a worker
+	 */
+	static FibersExecutorTask current() {
+		return CURRENT.get();
+	}
+
+	final FibersExecutor supervisor() {
+		return supervisor;
+	}
+
+	final FibersPartition partition() {
+		return partition;
+	}
+
+	/**
+	 * @return the thread executing this task, null if not running yet
+	 */
+	final Thread thread() {
+		return thread;
+	}
+
+	/**
+	 * @return the fiber being invoked currently, null if none
+	 */
+	final Object currentFiber() {
+		return CURRENT_FIBER.getOpaque(this);
+	}
+
+	/**
+	 * @return the count of the fibers iterated by this task, grows while the task makes progress
+	 */
+	final long invocationsCount() {
+		return (long) INVOCATIONS_COUNT.getOpaque(this);
+	}
+
+	private void handleFailure(final Fiber fiber, final Throwable cause) {
+		if(supervisor == null) {
+			LOG.log(Level.WARNING, "Fiber \"" + fiber + "\" failed", cause);
+		} else {
+			supervisor.handleFailure(fiber, cause);
+		}
+	}
+
+	private void handleFailure(final LightFiber fiber, final Throwable cause) {
+		if(supervisor == null) {
+			LOG.log(Level.WARNING, "Fiber \"" + fiber + "\" failed", cause);
+		} else {
+			supervisor.handleFailure(fiber, cause);
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package com.github.akurilov.fiber4j;
+
+import java.util.Queue;
+
+/**
+ * The part of the fibers executor registry. Each executor worker iterates the fibers of a single partition only.
+ */
+final class FibersPartition {
+
+	final int index;
+	final Queue<Fiber> fibers;
+	final Queue<LightFiber> lightFibers;
+
+	FibersPartition(final int index, final Queue<Fiber> fibers, final Queue<LightFiber> lightFibers) {
+		this.index = index;
+		this.fibers = fibers;
+		this.lightFibers = lightFibers;
+	}
+}
@@ -0,0 +1,187 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.concurrent.AsyncRunnableBase;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The watchdog detecting the fiber invocations which are stuck. It checks the fibers executor workers periodically
+ * and reports the invocation which is still running longer than the limit together with the stuck worker stack trace.
+ * Optionally it starts the compensating worker for each stuck worker so the executor throughput is preserved until the
+ * stuck invocation returns. Only the regular workers are compensated, at most one compensating worker per each, so the
+ * threads count stays bounded even if the compensating workers get stuck too. The watchdog doesn't add any clock reads
+ * to the workers.
+ */
+public final class FibersWatchdog
+extends AsyncRunnableBase
+implements Runnable {
+
+	private static final Logger LOG = Logger.getLogger(FibersWatchdog.class.getName());
+
+	private final FibersExecutor executor;
+	private final long periodMillis;
+	private final long limitNanos;
+	private final boolean compensateFlag;
+	private final Map<FibersExecutorTask, Stall> stalls = new HashMap<>();
+
+	private volatile Thread thread = null;
+
+	private static final class Stall {
+
+		private Object fiber;
+		private long invocationsCount;
+		private long sinceNanos;
+		private boolean reportedFlag;
+		private FibersExecutorTask compensatingWorker;
+
+		private Stall(final Object fiber, final long invocationsCount, final long sinceNanos) {
+			reset(fiber, invocationsCount, sinceNanos);
+		}
+
+		private void reset(final Object fiber, final long invocationsCount, final long sinceNanos) {
+			this.fiber = fiber;
+			this.invocationsCount = invocationsCount;
+			this.sinceNanos = sinceNanos;
+			this.reportedFlag = false;
+		}
+	}
+
+	public FibersWatchdog(final FibersExecutor executor, final boolean compensateFlag) {
+		this(executor, 1_000, Fiber.WARN_DURATION_LIMIT_NANOS, compensateFlag);
+	}
+
+	/**
+	 * @param executor the fibers executor to watch
+	 * @param periodMillis the check period
+	 * @param limitNanos the invocation duration limit, the invocations running longer are reported
+	 * @param compensateFlag if true, start the additional worker for each stuck worker
+	 */
+	public FibersWatchdog(
+		final FibersExecutor executor, final long periodMillis, final long limitNanos, final boolean compensateFlag
+	) {
+		this.executor = executor;
+		this.periodMillis = periodMillis;
+		this.limitNanos = limitNanos;
+		this.compensateFlag = compensateFlag;
+	}
+
+	@Override
+	protected final void doStart() {
+		final Thread t = new Thread(this, "fibers-watchdog");
+		t.setDaemon(true);
+		thread = t;
+		t.start();
+	}
+
+	@Override
+	public final void run() {
+		// don't check the state here, it may be not updated yet when the thread starts
+		while(!Thread.currentThread().isInterrupted()) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(periodMillis);
+			} catch(final InterruptedException e) {
+				break;
+			}
+			final long now = System.nanoTime();
+			for(final FibersExecutorTask worker : executor.workers()) {
+				check(worker, now);
+			}
+			for(final FibersExecutorTask worker : executor.compensatingWorkers()) {
+				check(worker, now);
+			}
+			for(final Iterator<Map.Entry<FibersExecutorTask, Stall>> i = stalls.entrySet().iterator(); i.hasNext();) {
+				final Map.Entry<FibersExecutorTask, Stall> e = i.next();
+				final FibersExecutorTask worker = e.getKey();
+				if(!executor.workers().contains(worker) && !executor.compensatingWorkers().contains(worker)) {
+					// the worker was removed by the threads count change, its compensating worker is not needed
+					final FibersExecutorTask compensatingWorker = e.getValue().compensatingWorker;
+					if(compensatingWorker != null) {
+						executor.stopCompensatingWorker(compensatingWorker);
+					}
+					i.remove();
+				}
+			}
+		}
+	}
+
+	private void check(final FibersExecutorTask worker, final long now) {
+		final Object fiber = worker.currentFiber();
+		final long invocationsCount = worker.invocationsCount();
+		final Stall stall = stalls.get(worker);
+		if(stall == null) {
+			if(fiber != null) {
+				stalls.put(worker, new Stall(fiber, invocationsCount, now));
+			}
+		} else if(fiber == null || fiber != stall.fiber || invocationsCount != stall.invocationsCount) {
+			// the worker made some progress since the last check
+			if(stall.reportedFlag) {
+				LOG.log(
+					Level.INFO,
+					"Fiber \"" + stall.fiber + "\" invocation returned after " +
+						TimeUnit.NANOSECONDS.toMillis(now - stall.sinceNanos) + "[ms]"
+				);
+			}
+			if(stall.compensatingWorker != null) {
+				executor.stopCompensatingWorker(stall.compensatingWorker);
+				stall.compensatingWorker = null;
+			}
+			if(fiber == null) {
+				stalls.remove(worker);
+			} else {
+				stall.reset(fiber, invocationsCount, now);
+			}
+		} else if(!stall.reportedFlag && now - stall.sinceNanos > limitNanos) {
+			stall.reportedFlag = true;
+			final Thread workerThread = worker.thread();
+			final Throwable trace = new Throwable("Stuck worker thread \"" + workerThread + "\" stack trace");
+			if(workerThread != null) {
+				trace.setStackTrace(workerThread.getStackTrace());
+			}
+			LOG.log(
+				Level.WARNING,
+				"Fiber \"" + fiber + "\" invocation is running for more than " +
+					TimeUnit.NANOSECONDS.toMillis(now - stall.sinceNanos) + "[ms]",
+				trace
+			);
+			if(compensateFlag) {
+				stall.compensatingWorker = executor.startCompensatingWorker(worker);
+				if(stall.compensatingWorker == null) {
+					LOG.log(Level.INFO, "Worker thread \"" + workerThread + "\" is not compensated, the limit is reached");
+				}
+			}
+		}
+	}
+
+	@Override
+	protected final void doStop() {
+		final Thread t = thread;
+		if(t != null) {
+			t.interrupt();
+		}
+	}
+
+	@Override
+	protected final void doClose()
+	throws IOException {
+		try {
+			final Thread t = thread;
+			if(t != null) {
+				t.join();
+			}
+		} catch(final InterruptedException e) {
+			throw new IOException(e);
+		}
+		for(final Stall stall : stalls.values()) {
+			if(stall.compensatingWorker != null) {
+				executor.stopCompensatingWorker(stall.compensatingWorker);
+			}
+		}
+		stalls.clear();
+	}
+}
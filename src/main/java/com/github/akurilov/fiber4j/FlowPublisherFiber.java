@@ -0,0 +1,227 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.collection.CircularArrayBuffer;
+import com.github.akurilov.commons.collection.CircularBuffer;
+import com.github.akurilov.commons.io.Input;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <i>exclusive</i> fiber implementation which publishes the items got from the given input to the single
+ * {@link Flow.Subscriber}. The input is drained only according to the demand requested by the subscriber. The
+ * subscriber is completed and the fiber closes itself when the input is exhausted.
+ * <p>
+ * The subscriber signals are serialized by the signal lock which is held only while a signal is being delivered. The
+ * invocation lock may not be used for that: the fiber closes itself from inside the invocation, so
+ * {@link #close()} waiting for the invocation lock would deadlock.
+ */
+public class FlowPublisherFiber<T>
+extends ExclusiveFiberBase
+implements Flow.Publisher<T> {
+
+	private static final Logger LOG = Logger.getLogger(FlowPublisherFiber.class.getName());
+
+	private final Input<T> input;
+	private final CircularBuffer<T> itemsBuff;
+	private final int capacity;
+	private final AtomicReference<DemandSubscription<T>> subscriptionRef = new AtomicReference<>(null);
+	private final Lock signalLock = new ReentrantLock();
+
+	private static final class DemandSubscription<T>
+	implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final AtomicLong demand = new AtomicLong(0);
+
+		private volatile boolean cancelFlag = false;
+		private volatile boolean invalidRequestFlag = false;
+
+		private DemandSubscription(final Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public final void request(final long n) {
+			if(n > 0) {
+				long prev, next;
+				do {
+					prev = demand.get();
+					next = prev + n;
+					if(next < 0) {
+						next = Long.MAX_VALUE;
+					}
+				} while(!demand.compareAndSet(prev, next));
+			} else {
+				// the error is signaled by the publisher fiber in order to keep the signals serial
+				invalidRequestFlag = true;
+			}
+		}
+
+		@Override
+		public final void cancel() {
+			cancelFlag = true;
+		}
+	}
+
+	private static final Flow.Subscription REJECTED_SUBSCRIPTION = new Flow.Subscription() {
+
+		@Override
+		public final void request(final long n) {
+		}
+
+		@Override
+		public final void cancel() {
+		}
+	};
+
+	public FlowPublisherFiber(final FibersExecutor executor, final Input<T> input, final int capacity) {
+		this(executor, new CircularArrayBuffer<>(capacity), input);
+	}
+
+	public FlowPublisherFiber(final FibersExecutor executor, final CircularBuffer<T> itemsBuff, final Input<T> input) {
+		super(executor);
+		this.input = input;
+		this.itemsBuff = itemsBuff;
+		this.capacity = itemsBuff.capacity();
+	}
+
+	@Override
+	public final void subscribe(final Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		final DemandSubscription<T> subscription = new DemandSubscription<>(subscriber);
+		if(subscriptionRef.compareAndSet(null, subscription)) {
+			// the subscriber may request in onSubscribe, don't let the fiber signal onNext before it returns
+			signalLock.lock();
+			try {
+				subscriber.onSubscribe(subscription);
+			} finally {
+				signalLock.unlock();
+			}
+		} else {
+			subscriber.onSubscribe(REJECTED_SUBSCRIPTION);
+			subscriber.onError(new IllegalStateException("Fiber \"" + this + "\" supports a single subscriber only"));
+		}
+	}
+
+	@Override
+	protected final void invokeTimedExclusively(final long startTimeNanos) {
+
+		final DemandSubscription<T> s = subscriptionRef.get();
+		if(s == null || s.cancelFlag) {
+			return;
+		}
+
+		if(s.invalidRequestFlag) {
+			signalError(s, new IllegalArgumentException("Non-positive request count"));
+			return;
+		}
+
+		try {
+			long demand;
+			int n;
+			while(!s.cancelFlag && (demand = s.demand.get()) > 0) {
+				if(itemsBuff.isEmpty() && isStarted()) {
+					input.get(itemsBuff, (int) Math.min(demand, capacity));
+				}
+				n = (int) Math.min(itemsBuff.size(), demand);
+				if(n == 0) {
+					break;
+				}
+				if(!signalNext(s, n)) {
+					break;
+				}
+				itemsBuff.removeFirst(n);
+				s.demand.addAndGet(-n);
+				if(budgetExceeded(startTimeNanos)) {
+					break;
+				}
+			}
+		} catch(final NoSuchObjectException | ConnectException ignored) {
+		} catch(final EOFException e) {
+			complete(s);
+		} catch(final RemoteException e) {
+			if(e.getCause() instanceof EOFException) {
+				complete(s);
+			} else {
+				LOG.log(Level.WARNING, "Failure", e);
+			}
+		} catch(final IOException e) {
+			signalError(s, e);
+		}
+	}
+
+	/**
+	 * @return true if the first n buffered items are signaled, false if the subscription is cancelled
+	 */
+	private boolean signalNext(final DemandSubscription<T> s, final int n) {
+		signalLock.lock();
+		try {
+			if(s.cancelFlag) {
+				return false;
+			}
+			for(int i = 0; i < n; i ++) {
+				s.subscriber.onNext(itemsBuff.get(i));
+			}
+			return true;
+		} finally {
+			signalLock.unlock();
+		}
+	}
+
+	private void signalError(final DemandSubscription<T> s, final Throwable cause) {
+		signalLock.lock();
+		try {
+			if(!s.cancelFlag) {
+				s.cancelFlag = true;
+				s.subscriber.onError(cause);
+			}
+		} finally {
+			signalLock.unlock();
+		}
+	}
+
+	private void signalComplete(final DemandSubscription<T> s) {
+		signalLock.lock();
+		try {
+			if(!s.cancelFlag) {
+				s.cancelFlag = true;
+				s.subscriber.onComplete();
+			}
+		} finally {
+			signalLock.unlock();
+		}
+	}
+
+	private void complete(final DemandSubscription<T> s) {
+		if(itemsBuff.isEmpty()) {
+			signalComplete(s);
+			try {
+				close();
+			} catch(final IOException e) {
+				LOG.log(Level.WARNING, "Failed to close self after EOF", e);
+			}
+		}
+	}
+
+	@Override
+	protected void doClose()
+	throws IOException {
+		final DemandSubscription<T> s = subscriptionRef.get();
+		if(s != null) {
+			// waits for the onNext signals being delivered by the fiber at the moment
+			signalComplete(s);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.collection.CircularArrayBuffer;
+import com.github.akurilov.commons.collection.CircularBuffer;
+import com.github.akurilov.commons.io.Output;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <i>exclusive</i> fiber implementation which subscribes to a {@link Flow.Publisher} and transfers the received
+ * items to the given output. The demand is requested from the publisher in the amount of the free items buffer
+ * capacity so the publisher never needs to retry. The fiber closes itself after the publisher completion when all
+ * the received items are transferred.
+ * <p>
+ * The received items are queued w/o blocking the publisher and moved to the items buffer by the fiber. The publisher
+ * which exceeds the requested demand violates the protocol: the subscription is cancelled and the next fiber
+ * invocation fails, so the executor failure policy is applied.
+ */
+public class FlowSubscriberFiber<T>
+extends ExclusiveFiberBase
+implements Flow.Subscriber<T> {
+
+	private static final Logger LOG = Logger.getLogger(FlowSubscriberFiber.class.getName());
+
+	private final Output<T> output;
+	private final CircularBuffer<T> itemsBuff;
+	private final int capacity;
+	private final BlockingQueue<T> receivedItems;
+	private final AtomicLong pendingCount = new AtomicLong(0);
+
+	private volatile Flow.Subscription subscription = null;
+	private volatile boolean completeFlag = false;
+	private volatile IllegalStateException protocolViolation = null;
+
+	private int n;
+
+	public FlowSubscriberFiber(final FibersExecutor executor, final Output<T> output, final int capacity) {
+		this(executor, new CircularArrayBuffer<>(capacity), output);
+	}
+
+	public FlowSubscriberFiber(
+		final FibersExecutor executor, final CircularBuffer<T> itemsBuff, final Output<T> output
+	) {
+		super(executor);
+		this.output = output;
+		this.itemsBuff = itemsBuff;
+		this.capacity = itemsBuff.capacity();
+		this.receivedItems = new ArrayBlockingQueue<>(capacity);
+	}
+
+	@Override
+	public final void onSubscribe(final Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		if(this.subscription == null) {
+			this.subscription = subscription;
+		} else {
+			subscription.cancel();
+		}
+	}
+
+	@Override
+	public final void onNext(final T item) {
+		Objects.requireNonNull(item);
+		// enqueue before the pending count decrement, so the fiber never requests more than the free capacity, both
+		// operations should be done regardless of the result
+		if(!receivedItems.offer(item) | pendingCount.decrementAndGet() < 0) {
+			final IllegalStateException e = new IllegalStateException(
+				"Fiber \"" + this + "\": the publisher exceeded the requested demand"
+			);
+			LOG.log(Level.WARNING, "Protocol violation, cancelling the subscription", e);
+			protocolViolation = e;
+			completeFlag = true;
+			final Flow.Subscription s = subscription;
+			if(s != null) {
+				s.cancel();
+			}
+		}
+		// the items arrive only on demand, so the re-runs are bounded by the free capacity
+		requestRerun();
+	}
+
+	@Override
+	public final void onError(final Throwable cause) {
+		LOG.log(Level.WARNING, "Fiber \"" + this + "\": the publisher failed", cause);
+		completeFlag = true;
+	}
+
+	@Override
+	public final void onComplete() {
+		completeFlag = true;
+	}
+
+	@Override
+	protected final void invokeTimedExclusively(final long startTimeNanos) {
+
+		final IllegalStateException violation = protocolViolation;
+		if(violation != null) {
+			protocolViolation = null;
+			throw violation;
+		}
+
+		T receivedItem;
+		while(itemsBuff.size() < capacity && null != (receivedItem = receivedItems.poll())) {
+			itemsBuff.add(receivedItem);
+		}
+
+		try {
+			n = itemsBuff.size();
+			if(n > 0) {
+				if(1 == n) {
+					final T item = itemsBuff.get(0);
+					if(output.put(item)) {
+						itemsBuff.clear();
+					}
+				} else {
+					n = output.put(itemsBuff, 0, Math.min(n, capacity));
+					itemsBuff.removeFirst(n);
+				}
+			}
+			n = capacity - itemsBuff.size() - receivedItems.size();
+		} catch(final NoSuchObjectException | ConnectException ignored) {
+			n = 0;
+		} catch(final EOFException e) {
+			closeAfterEof();
+			return;
+		} catch(final RemoteException e) {
+			if(e.getCause() instanceof EOFException) {
+				closeAfterEof();
+				return;
+			}
+			LOG.log(Level.WARNING, "Failure", e);
+			n = 0;
+		} catch(final IOException e) {
+			LOG.log(Level.WARNING, "Failure", e);
+			n = 0;
+		}
+
+		if(completeFlag) {
+			if(itemsBuff.isEmpty() && receivedItems.isEmpty()) {
+				try {
+					close();
+				} catch(final IOException e) {
+					LOG.log(Level.WARNING, "Failed to close self after the publisher completion", e);
+				}
+			}
+		} else if(isStarted()) {
+			final Flow.Subscription s = subscription;
+			if(s != null) {
+				// request only the free buffer capacity which is not covered by the demand requested before
+				final long credit = n - pendingCount.get();
+				if(credit > 0) {
+					pendingCount.addAndGet(credit);
+					s.request(credit);
+				}
+			}
+		}
+	}
+
+	private void closeAfterEof() {
+		try {
+			close();
+		} catch(final IOException e) {
+			LOG.log(Level.WARNING, "Failed to close self after EOF", e);
+		}
+	}
+
+	@Override
+	protected void doClose()
+	throws IOException {
+		final Flow.Subscription s = subscription;
+		if(s != null && !completeFlag) {
+			s.cancel();
+		}
+		// the items buffer is accessed by the fiber only
+		receivedItems.clear();
+	}
+}
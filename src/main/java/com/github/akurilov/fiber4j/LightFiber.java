@@ -0,0 +1,122 @@
+package com.github.akurilov.fiber4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.LongConsumer;
+
+/**
+ * The lightweight fiber handle created from a function by {@link FibersExecutor#submit(LongConsumer)} or
+ * {@link FibersExecutor#submit(Runnable)}. Unlike the {@link FiberBase} the lifecycle state, the exclusive invocation
+ * flag and the function type are packed into the single int field so the instance footprint is minimal. The function accepts the time when the invocation started and should follow the same
+ * rules as {@link FiberBase#invokeTimed(long)}. The fiber is started when submitted and may not be restarted after
+ * stop.
+ */
+public final class LightFiber {
+
+	private static final int STOPPED = 1;
+	private static final int EXCLUSIVE = 1 << 1;
+	private static final int INVOKING = 1 << 2;
+	private static final int RUNNABLE = 1 << 3;
+
+	private static final VarHandle STATE;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(LightFiber.class, "state", int.class);
+		} catch(final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Object fn; // either the LongConsumer or the Runnable, see the RUNNABLE flag
+
+	private volatile int state;
+
+	LightFiber(final LongConsumer fn, final boolean exclusiveFlag) {
+		this.fn = fn;
+		this.state = exclusiveFlag ? EXCLUSIVE : 0;
+	}
+
+	LightFiber(final Runnable fn, final boolean exclusiveFlag) {
+		this.fn = fn;
+		this.state = exclusiveFlag ? EXCLUSIVE | RUNNABLE : RUNNABLE;
+	}
+
+	final void invoke() {
+		invoke(0, true);
+	}
+
+	/**
+	 * Invokes w/o timing
+	 * @param startTimeNanos the time when the invocation started, may be stale, see {@link FiberTimingMode}
+	 */
+	final void invoke(final long startTimeNanos) {
+		invoke(startTimeNanos, false);
+	}
+
+	private void invoke(final long startTimeNanos, final boolean timedFlag) {
+		final int s = state;
+		if((s & STOPPED) == STOPPED) {
+			return;
+		}
+		if((s & EXCLUSIVE) == EXCLUSIVE) {
+			if((s & INVOKING) == INVOKING || !STATE.compareAndSet(this, s, s | INVOKING)) {
+				FiberLockSkipEvent.emit(this);
+				return;
+			}
+			try {
+				invoke0(startTimeNanos, timedFlag);
+			} finally {
+				STATE.getAndBitwiseAnd(this, ~INVOKING);
+			}
+		} else {
+			invoke0(startTimeNanos, timedFlag);
+		}
+	}
+
+	private void invoke0(final long startTimeNanos, final boolean timedFlag) {
+		if(timedFlag) {
+			invokeTimed();
+		} else {
+			apply(startTimeNanos);
+		}
+	}
+
+	private void invokeTimed() {
+		long t = System.nanoTime();
+		apply(t);
+		t = System.nanoTime() - t;
+		if(t > FiberSlowInvocationEvent.THRESHOLD_NANOS) {
+			FiberSlowInvocationEvent.emit(this, t);
+		}
+		if(t > Fiber.DEBUG_DURATION_LIMIT_NANOS) {
+			FiberBase.logDuration(this, t);
+		}
+	}
+
+	private void apply(final long startTimeNanos) {
+		if((state & RUNNABLE) == RUNNABLE) {
+			((Runnable) fn).run();
+		} else {
+			((LongConsumer) fn).accept(startTimeNanos);
+		}
+	}
+
+	/**
+	 * Stop the fiber. The executor will not invoke it anymore and will remove it from the registry.
+	 */
+	public final void stop() {
+		STATE.getAndBitwiseOr(this, STOPPED);
+	}
+
+	public final boolean isStopped() {
+		return (state & STOPPED) == STOPPED;
+	}
+
+	/**
+	 * @return true if the fiber may not be invoked in parallel, false otherwise
+	 */
+	public final boolean isExclusive() {
+		return (state & EXCLUSIVE) == EXCLUSIVE;
+	}
+}
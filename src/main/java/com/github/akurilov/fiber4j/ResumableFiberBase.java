@@ -0,0 +1,127 @@
+package com.github.akurilov.fiber4j;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The base class for an <i>exclusive</i> fiber implemented as a state machine. The work is split into the steps and
+ * each step returns the suspension point telling how to proceed: continue with the next step, yield until the next
+ * invocation, wait until the specified time or finish. The state is kept between the invocations so the next invocation
+ * resumes the fiber where the previous one stopped. The steps are executed while the invocation time budget allows.
+ */
+public abstract class ResumableFiberBase
+extends ExclusiveFiberBase {
+
+	private static final Logger LOG = Logger.getLogger(ResumableFiberBase.class.getName());
+
+	/**
+	 * The step result. Use the {@link #next(int)}, {@link #yieldTo(int)}, {@link #waitUntil(int, long)} and
+	 * {@link #done()} methods to get it.
+	 */
+	protected static final class Step {
+		private Step() {
+		}
+	}
+
+	private static final Step CONTINUE = new Step();
+	private static final Step YIELD = new Step();
+	private static final Step WAIT = new Step();
+	private static final Step DONE = new Step();
+
+	private int stepState;
+	private long wakeUpTimeNanos;
+	private boolean waitFlag = false;
+	private boolean doneFlag = false;
+
+	protected ResumableFiberBase(final FibersExecutor executor) {
+		this(executor, 0);
+	}
+
+	protected ResumableFiberBase(final FibersExecutor executor, final int initialState) {
+		super(executor);
+		this.stepState = initialState;
+	}
+
+	@Override
+	protected final void invokeTimedExclusively(final long startTimeNanos) {
+		if(doneFlag) {
+			return;
+		}
+		if(waitFlag) {
+			if(startTimeNanos - wakeUpTimeNanos < 0) {
+				return;
+			}
+			waitFlag = false;
+		}
+		Step step;
+		do {
+			step = step(stepState, startTimeNanos);
+		} while(CONTINUE == step && !budgetExceeded(startTimeNanos));
+		if(WAIT == step) {
+			waitFlag = true;
+		} else if(DONE == step) {
+			// the terminal state is kept even if the fiber fails to stop so the last step is never repeated
+			doneFlag = true;
+			try {
+				stop();
+			} catch(final IllegalStateException e) {
+				LOG.log(Level.FINE, "Fiber \"" + this + "\" is done but failed to stop", e);
+			}
+		}
+	}
+
+	/**
+	 * Execute the step of the work. The method is guaranteed to be executing only in a single thread.
+	 * @param stepState the current state, the initial one or the state specified by the previous step
+	 * @param startTimeNanos the time when the invocation started
+	 * @return the step result
+	 */
+	protected abstract Step step(final int stepState, final long startTimeNanos);
+
+	/**
+	 * @return the current step state
+	 */
+	protected final int stepState() {
+		return stepState;
+	}
+
+	/**
+	 * Proceed to the next step in the same invocation if the invocation time budget allows
+	 * @param nextState the state to continue from
+	 * @return the step result
+	 */
+	protected final Step next(final int nextState) {
+		stepState = nextState;
+		return CONTINUE;
+	}
+
+	/**
+	 * Suspend until the next invocation
+	 * @param nextState the state to resume from
+	 * @return the step result
+	 */
+	protected final Step yieldTo(final int nextState) {
+		stepState = nextState;
+		return YIELD;
+	}
+
+	/**
+	 * Suspend until the specified time. The invocations before that time will return immediately.
+	 * @param nextState the state to resume from
+	 * @param wakeUpTimeNanos the time to resume at, in terms of {@link System#nanoTime()}
+	 * @return the step result
+	 */
+	protected final Step waitUntil(final int nextState, final long wakeUpTimeNanos) {
+		stepState = nextState;
+		this.wakeUpTimeNanos = wakeUpTimeNanos;
+		return WAIT;
+	}
+
+	/**
+	 * Finish the work, the fiber will be stopped
+	 * @return the step result
+	 */
+	protected final Step done() {
+		return DONE;
+	}
+}
@@ -2,6 +2,7 @@ module com.github.akurilov.fiber4j {
 
 	requires com.github.akurilov.commons;
 	requires java.logging;
+	requires jdk.jfr;
 	requires java.rmi;
 
 	exports com.github.akurilov.fiber4j;
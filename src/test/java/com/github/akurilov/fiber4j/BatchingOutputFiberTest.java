@@ -0,0 +1,173 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.io.Input;
+import com.github.akurilov.commons.io.Output;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BatchingOutputFiberTest {
+
+	private static final int ITEMS_COUNT = 100_000;
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * The in-process stand-in for the remote output: each call takes some time, some calls fail to connect and some
+	 * calls accept only a part of the batch
+	 */
+	private static final class RemoteOutputStub
+	implements Output<Object> {
+
+		private final LongAdder callsCounter = new LongAdder();
+		private final LongAdder itemsCounter = new LongAdder();
+
+		@Override
+		public boolean put(final Object item)
+		throws IOException {
+			return put(List.of(item)) == 1;
+		}
+
+		@Override
+		public int put(final List<Object> buffer, final int from, final int to)
+		throws IOException {
+			return put(buffer.subList(from, to));
+		}
+
+		@Override
+		public int put(final List<Object> buffer)
+		throws IOException {
+			callsCounter.increment();
+			try {
+				TimeUnit.MILLISECONDS.sleep(1);
+			} catch(final InterruptedException e) {
+				throw new IOException(e);
+			}
+			final double r = Math.random();
+			if(r < 0.1) {
+				throw new ConnectException("Connection refused (test)");
+			}
+			final int n = r < 0.2 ? buffer.size() / 2 : buffer.size();
+			itemsCounter.add(n);
+			return n;
+		}
+
+		@Override
+		public Input<Object> getInput()
+		throws IOException {
+			return null;
+		}
+
+		@Override
+		public void close()
+		throws IOException {
+		}
+	}
+
+	/**
+	 * The remote output which is never reachable
+	 */
+	private static final class DownOutputStub
+	implements Output<Object> {
+
+		private final List<Long> callTimes = new CopyOnWriteArrayList<>();
+
+		@Override
+		public boolean put(final Object item)
+		throws IOException {
+			return put(List.of(item)) == 1;
+		}
+
+		@Override
+		public int put(final List<Object> buffer, final int from, final int to)
+		throws IOException {
+			return put(buffer.subList(from, to));
+		}
+
+		@Override
+		public int put(final List<Object> buffer)
+		throws IOException {
+			callTimes.add(System.nanoTime());
+			throw new ConnectException("Connection refused (test)");
+		}
+
+		@Override
+		public Input<Object> getInput()
+		throws IOException {
+			return null;
+		}
+
+		@Override
+		public void close()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void test()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final RemoteOutputStub output = new RemoteOutputStub();
+		final BatchingOutputFiber<Object> batchingOutput = new BatchingOutputFiber<>(
+			fibersExecutor, output, BATCH_SIZE, 10, TimeUnit.MILLISECONDS, 4
+		);
+		batchingOutput.start();
+		final List<Object> items = new ArrayList<>(100);
+		for(int i = 0; i < 100; i ++) {
+			items.add(new Object());
+		}
+		int n = 0;
+		while(n < ITEMS_COUNT) {
+			if(n % 2 == 0) {
+				if(batchingOutput.put(items.get(0))) {
+					n ++;
+				}
+			} else {
+				n += batchingOutput.put(items, 0, Math.min(items.size(), ITEMS_COUNT - n));
+			}
+		}
+		batchingOutput.shutdown();
+		assertTrue(batchingOutput.await(1, TimeUnit.MINUTES));
+		assertEquals(ITEMS_COUNT, output.itemsCounter.sum());
+		assertTrue(output.callsCounter.sum() < 2 * ITEMS_COUNT / BATCH_SIZE);
+		batchingOutput.close();
+	}
+
+	@Test
+	public final void testOutputStaysDown()
+	throws Exception {
+		final int maxAttempts = 5;
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		fibersExecutor.setFailurePolicy(FiberFailurePolicy.STOP);
+		final DownOutputStub output = new DownOutputStub();
+		final BatchingOutputFiber<Object> batchingOutput = new BatchingOutputFiber<>(
+			fibersExecutor, output, BATCH_SIZE, 10, TimeUnit.MILLISECONDS, 4, maxAttempts
+		);
+		batchingOutput.start();
+		assertTrue(batchingOutput.put(new Object()));
+		final long t = System.currentTimeMillis();
+		while(batchingOutput.isStarted() && System.currentTimeMillis() - t < TimeUnit.SECONDS.toMillis(10)) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		// the batch is dropped after the max count of attempts and the failure is handled by the policy
+		assertTrue(batchingOutput.isStopped());
+		assertEquals(1, fibersExecutor.getFailuresCount());
+		final List<Long> callTimes = output.callTimes;
+		assertEquals(maxAttempts, callTimes.size());
+		// the delay between the attempts grows
+		for(int i = 1; i < callTimes.size(); i ++) {
+			assertTrue(
+				callTimes.get(i) - callTimes.get(i - 1) >= BatchingOutputFiber.RETRY_DELAY_MIN_NANOS << (i - 1)
+			);
+		}
+		batchingOutput.close();
+	}
+}
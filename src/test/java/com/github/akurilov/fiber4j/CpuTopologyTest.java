@@ -0,0 +1,66 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CpuTopologyTest {
+
+	@Test
+	public final void testParseCpuList() {
+		assertTrue(Arrays.equals(new int[] { 0 }, CpuTopology.parseCpuList("0\n")));
+		assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3 }, CpuTopology.parseCpuList("0-3")));
+		assertTrue(
+			Arrays.equals(new int[] { 0, 1, 2, 3, 8, 9, 10, 11, 16 }, CpuTopology.parseCpuList("0-3,8-11,16\n"))
+		);
+		assertTrue(Arrays.equals(new int[0], CpuTopology.parseCpuList("\n")));
+	}
+
+	@Test
+	public final void testTopologyAwareExecutor()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor(false, true);
+		final LongAdder counter = new LongAdder();
+		for(int i = 0; i < 100; i ++) {
+			fibersExecutor.submit(counter::increment);
+		}
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(counter.sum() > 100);
+	}
+
+	@Test
+	public final void testWorkerPartitionIndices() {
+		assertArrayEquals(new int[] { 0 }, FibersExecutor.workerPartitionIndices(new int[] { 1 }));
+		assertArrayEquals(new int[] { 0, 1, 0, 1 }, FibersExecutor.workerPartitionIndices(new int[] { 2, 2 }));
+		assertArrayEquals(
+			new int[] { 0, 1, 0, 0, 0, 0, 1, 0, 0, 0 }, FibersExecutor.workerPartitionIndices(new int[] { 8, 2 })
+		);
+		assertArrayEquals(new int[] { 0, 1, 2, 0, 0, 0 }, FibersExecutor.workerPartitionIndices(new int[] { 4, 1, 1 }));
+	}
+
+	@Test
+	public final void testUnequalNodesEachFiberInvoked()
+	throws Exception {
+		// 8 + 2 CPUs, but 2 workers only
+		final FibersExecutor fibersExecutor = new FibersExecutor(
+			false, List.of(new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, new int[] { 8, 9 })
+		);
+		fibersExecutor.setThreadCount(2);
+		final int fibersCount = 100;
+		final LongAdder[] counters = new LongAdder[fibersCount];
+		for(int i = 0; i < fibersCount; i ++) {
+			final LongAdder counter = new LongAdder();
+			counters[i] = counter;
+			fibersExecutor.submit(counter::increment);
+		}
+		TimeUnit.SECONDS.sleep(1);
+		for(final LongAdder counter : counters) {
+			assertTrue(counter.sum() > 0);
+		}
+	}
+}
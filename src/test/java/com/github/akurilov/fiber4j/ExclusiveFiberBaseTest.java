@@ -0,0 +1,69 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExclusiveFiberBaseTest {
+
+	private static final class ContendedFiber
+	extends ExclusiveFiberBase {
+
+		private final AtomicInteger invocationsCount = new AtomicInteger(0);
+		private final Runnable concurrentAction;
+
+		private ContendedFiber(final FibersExecutor executor, final boolean producerFlag) {
+			super(executor);
+			// another thread either tries to invoke the fiber or signals the new work while the fiber is being invoked
+			this.concurrentAction = producerFlag ? this::requestRerun : this::invoke;
+		}
+
+		@Override
+		protected final void invokeTimedExclusively(final long startTimeNanos) {
+			if(invocationsCount.incrementAndGet() == 1) {
+				final Thread t = new Thread(concurrentAction);
+				t.start();
+				try {
+					t.join();
+				} catch(final InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			}
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void testSkipOnContention() {
+		final ContendedFiber fiber = new ContendedFiber(new FibersExecutor(false), false);
+		fiber.invoke();
+		// the contention alone doesn't cause the re-run
+		assertEquals(1, fiber.invocationsCount.get());
+	}
+
+	@Test
+	public final void testRerunOnRequest() {
+		final ContendedFiber fiber = new ContendedFiber(new FibersExecutor(false), true);
+		fiber.invoke();
+		assertEquals(2, fiber.invocationsCount.get());
+		// the re-run request is consumed
+		fiber.invoke();
+		assertEquals(3, fiber.invocationsCount.get());
+	}
+
+	@Test
+	public final void testRequestServedByNextInvocation() {
+		final ContendedFiber fiber = new ContendedFiber(new FibersExecutor(false), true);
+		fiber.invoke();
+		fiber.requestRerun();
+		fiber.invoke();
+		// the request made between the invocations doesn't cause the extra pass
+		assertEquals(3, fiber.invocationsCount.get());
+	}
+}
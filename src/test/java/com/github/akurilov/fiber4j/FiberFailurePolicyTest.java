@@ -0,0 +1,135 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FiberFailurePolicyTest {
+
+	private static final class FailingFiber
+	extends FiberBase {
+
+		private FailingFiber(final FibersExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected final void invokeTimed(final long startTimeNanos) {
+			throw new IllegalStateException("Failing fiber test");
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	private static final class CountingFiber
+	extends FiberBase {
+
+		private final LongAdder counter = new LongAdder();
+
+		private CountingFiber(final FibersExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected final void invokeTimed(final long startTimeNanos) {
+			counter.increment();
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void testLogByDefault()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor();
+		assertEquals(FiberFailurePolicy.LOG, fibersExecutor.getFailurePolicy());
+		final Fiber failingFiber = new FailingFiber(fibersExecutor);
+		failingFiber.start();
+		TimeUnit.SECONDS.sleep(1);
+		final long failuresCount = fibersExecutor.getFailuresCount();
+		assertTrue(failuresCount > 0);
+		assertTrue(failingFiber.isStarted());
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(fibersExecutor.getFailuresCount() > failuresCount);
+		failingFiber.close();
+	}
+
+	@Test
+	public final void testStop()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor();
+		fibersExecutor.setFailurePolicy(FiberFailurePolicy.STOP);
+		final Fiber failingFiber = new FailingFiber(fibersExecutor);
+		final CountingFiber countingFiber = new CountingFiber(fibersExecutor);
+		failingFiber.start();
+		countingFiber.start();
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(failingFiber.isStopped());
+		assertTrue(fibersExecutor.getFailuresCount() > 0);
+		final long n = countingFiber.counter.sum();
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(countingFiber.counter.sum() > n);
+		countingFiber.close();
+		failingFiber.close();
+	}
+
+	@Test
+	public final void testQuarantine()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor();
+		fibersExecutor.setFailurePolicy(FiberFailurePolicy.QUARANTINE);
+		final Fiber failingFiber = new FailingFiber(fibersExecutor);
+		final CountingFiber countingFiber = new CountingFiber(fibersExecutor);
+		failingFiber.start();
+		countingFiber.start();
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(failingFiber.isStarted());
+		assertTrue(fibersExecutor.getQuarantinedFibers().contains(failingFiber));
+		final long failuresCount = fibersExecutor.getFailuresCount();
+		assertTrue(failuresCount > 0);
+		final long n = countingFiber.counter.sum();
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(countingFiber.counter.sum() > n);
+		assertEquals(failuresCount, fibersExecutor.getFailuresCount());
+		assertTrue(fibersExecutor.release(failingFiber));
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(fibersExecutor.getFailuresCount() > failuresCount);
+		failingFiber.close();
+		assertTrue(fibersExecutor.getQuarantinedFibers().isEmpty());
+		countingFiber.close();
+	}
+
+	@Test
+	public final void testVirtualMachineErrorIsRethrown() {
+		final ConcurrentLinkedQueue<LightFiber> lightFibers = new ConcurrentLinkedQueue<>();
+		lightFibers.add(
+			new LightFiber(
+				(Runnable) () -> {
+					throw new OutOfMemoryError("Failing fiber test");
+				},
+				false
+			)
+		);
+		final FibersExecutorTask task = new FibersExecutorTask(
+			null, new FibersPartition(0, new ConcurrentLinkedQueue<>(), lightFibers), false
+		);
+		task.start();
+		try {
+			task.run();
+			fail();
+		} catch(final OutOfMemoryError expected) {
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FiberGroupTest {
+
+	private static final class BusyFiber
+	extends FiberBase {
+
+		private final long durationNanos;
+		private final LongAdder invocationsCount = new LongAdder();
+		private volatile long maxStartLagNanos = 0;
+
+		private BusyFiber(final FibersExecutor executor) {
+			this(executor, 100_000);
+		}
+
+		private BusyFiber(final FibersExecutor executor, final long durationNanos) {
+			super(executor);
+			this.durationNanos = durationNanos;
+		}
+
+		@Override
+		protected final void invokeTimed(final long startTimeNanos) {
+			invocationsCount.increment();
+			final long t = System.nanoTime();
+			maxStartLagNanos = Math.max(maxStartLagNanos, t - startTimeNanos);
+			while(System.nanoTime() - t < durationNanos) {
+				Thread.onSpinWait();
+			}
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void test()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final FiberGroup minorGroup = new FiberGroup(fibersExecutor, "minor", 0.2);
+		final FiberGroup majorGroup = new FiberGroup(fibersExecutor, "major", 0.8);
+		for(int i = 0; i < 10; i ++) {
+			minorGroup.add(new BusyFiber(fibersExecutor));
+			majorGroup.add(new BusyFiber(fibersExecutor));
+		}
+		assertEquals(10, minorGroup.size());
+		minorGroup.start();
+		majorGroup.start();
+		minorGroup.startAll();
+		majorGroup.startAll();
+
+		TimeUnit.SECONDS.sleep(5);
+		final long minorConsumedNanos = minorGroup.getConsumedNanos();
+		final long majorConsumedNanos = majorGroup.getConsumedNanos();
+		assertTrue(minorGroup.getInvocationsCount() > 0);
+		assertTrue(majorGroup.getInvocationsCount() > 0);
+		assertTrue(minorGroup.getThrottledCount() > 0);
+		assertTrue(
+			"minor: " + minorConsumedNanos + ", major: " + majorConsumedNanos,
+			minorConsumedNanos < 0.3 * (minorConsumedNanos + majorConsumedNanos)
+		);
+
+		minorGroup.stopAll();
+		TimeUnit.MILLISECONDS.sleep(100);
+		final long minorInvocationsCount = minorGroup.getInvocationsCount();
+		TimeUnit.SECONDS.sleep(1);
+		assertEquals(minorInvocationsCount, minorGroup.getInvocationsCount());
+
+		minorGroup.closeAll();
+		majorGroup.closeAll();
+		minorGroup.close();
+		majorGroup.close();
+	}
+
+	@Test
+	public final void testResumeAfterBudgetExceeded()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		// the members get the group invocation start time
+		fibersExecutor.setTimingMode(FiberTimingMode.CHAINED);
+		final FiberGroup group = new FiberGroup(fibersExecutor, "slow", 1);
+		// each group invocation exceeds the soft duration limit after the 2nd member
+		final BusyFiber[] fibers = new BusyFiber[6];
+		for(int i = 0; i < fibers.length; i ++) {
+			fibers[i] = new BusyFiber(fibersExecutor, Fiber.SOFT_DURATION_LIMIT_NANOS * 3 / 5);
+			group.add(fibers[i]);
+		}
+		group.start();
+		group.startAll();
+		TimeUnit.SECONDS.sleep(2);
+		group.stop();
+		for(final BusyFiber fiber : fibers) {
+			assertTrue(fiber.invocationsCount.sum() > 0);
+			// no member is invoked after the group invocation budget is exceeded
+			assertTrue(
+				"start lag: " + fiber.maxStartLagNanos,
+				fiber.maxStartLagNanos < 2 * Fiber.SOFT_DURATION_LIMIT_NANOS
+			);
+		}
+		group.closeAll();
+		group.close();
+	}
+
+	@Test
+	public final void testCloseMovesStartedMembersToExecutor()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final FiberGroup group = new FiberGroup(fibersExecutor, "closed", 0.5);
+		final BusyFiber startedFiber = new BusyFiber(fibersExecutor);
+		final BusyFiber stoppedFiber = new BusyFiber(fibersExecutor);
+		group.add(startedFiber);
+		group.add(stoppedFiber);
+		group.start();
+		startedFiber.start();
+		group.close();
+		assertEquals(0, group.size());
+		final long startedInvocationsCount = startedFiber.invocationsCount.sum();
+		TimeUnit.SECONDS.sleep(1);
+		assertTrue(startedFiber.invocationsCount.sum() > startedInvocationsCount);
+		assertEquals(0, stoppedFiber.invocationsCount.sum());
+		startedFiber.close();
+		stoppedFiber.close();
+	}
+}
@@ -0,0 +1,187 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+public class FiberTimingModeTest {
+
+	private static final class StartTimes {
+
+		private final AtomicLong lastStartTimeNanos = new AtomicLong(0);
+		private final LongAdder repeatedCount = new LongAdder();
+		private final LongAdder nonMonotonicCount = new LongAdder();
+
+		private void record(final long startTimeNanos) {
+			final long lastStartTimeNanos = this.lastStartTimeNanos.getAndSet(startTimeNanos);
+			if(lastStartTimeNanos == startTimeNanos) {
+				repeatedCount.increment();
+			} else if(lastStartTimeNanos > startTimeNanos) {
+				nonMonotonicCount.increment();
+			}
+		}
+	}
+
+	private static final class CountingFiber
+	extends FiberBase {
+
+		private final long durationNanos;
+		private final StartTimes startTimes;
+		private final LongAdder invocationsCount = new LongAdder();
+		private final AtomicLong maxClockLagNanos = new AtomicLong(0);
+
+		private CountingFiber(final FibersExecutor executor) {
+			this(executor, 0, new StartTimes());
+		}
+
+		private CountingFiber(final FibersExecutor executor, final long durationNanos, final StartTimes startTimes) {
+			super(executor);
+			this.durationNanos = durationNanos;
+			this.startTimes = startTimes;
+		}
+
+		@Override
+		protected final void invokeTimed(final long startTimeNanos) {
+			invocationsCount.increment();
+			startTimes.record(startTimeNanos);
+			final long lagNanos = System.nanoTime() - startTimeNanos;
+			maxClockLagNanos.accumulateAndGet(lagNanos, Math::max);
+			while(System.nanoTime() - startTimeNanos < durationNanos) {
+				LockSupport.parkNanos(1_000_000);
+			}
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	private static void await(final BooleanSupplier condition)
+	throws InterruptedException {
+		// the first executor workers may start slowly
+		for(int i = 0; i < 100 && !condition.getAsBoolean(); i ++) {
+			TimeUnit.MILLISECONDS.sleep(100);
+		}
+	}
+
+	@Test
+	public final void testPrecise()
+	throws Exception {
+		final FibersExecutor executor = new FibersExecutor(false);
+		final CountingFiber fiber = new CountingFiber(executor);
+		fiber.start();
+		await(() -> fiber.invocationsCount.sum() > 10);
+		fiber.stop();
+		assertTrue(fiber.invocationsCount.sum() > 0);
+		assertEquals(0, fiber.startTimes.nonMonotonicCount.sum());
+		assertTrue(fiber.maxClockLagNanos.get() >= 0);
+	}
+
+	@Test
+	public final void testChained()
+	throws Exception {
+		final FibersExecutor executor = new FibersExecutor(false);
+		executor.setTimingMode(FiberTimingMode.CHAINED);
+		final CountingFiber fiber = new CountingFiber(executor);
+		fiber.start();
+		await(() -> fiber.invocationsCount.sum() > 10);
+		fiber.stop();
+		assertTrue(fiber.invocationsCount.sum() > 0);
+		assertEquals(0, fiber.startTimes.nonMonotonicCount.sum());
+		// the start time is never in the future
+		assertTrue(fiber.maxClockLagNanos.get() >= 0);
+	}
+
+	@Test
+	public final void testChainedSlowInvocationAttribution()
+	throws Exception {
+		final List<RecordedEvent> events;
+		final CountingFiber slowFiber;
+		final CountingFiber fastFiber;
+		final Path recordingFile = Files.createTempFile(getClass().getSimpleName(), ".jfr");
+		try(final Recording recording = new Recording()) {
+			recording.enable("com.github.akurilov.fiber4j.SlowInvocation").withoutThreshold();
+			recording.start();
+			final FibersExecutor executor = new FibersExecutor(false);
+			executor.setTimingMode(FiberTimingMode.CHAINED);
+			slowFiber = new CountingFiber(
+				executor, FiberSlowInvocationEvent.THRESHOLD_NANOS + 5_000_000L, new StartTimes()
+			);
+			fastFiber = new CountingFiber(executor);
+			slowFiber.start();
+			fastFiber.start();
+			await(() -> slowFiber.invocationsCount.sum() > 2 && fastFiber.invocationsCount.sum() > 2);
+			slowFiber.stop();
+			fastFiber.stop();
+			recording.stop();
+			recording.dump(recordingFile);
+			events = RecordingFile.readAllEvents(recordingFile);
+		} finally {
+			Files.deleteIfExists(recordingFile);
+		}
+		// the fiber invoked after the slow one gets the fresh start time
+		assertTrue(
+			"max clock lag: " + fastFiber.maxClockLagNanos.get(),
+			fastFiber.maxClockLagNanos.get() < FiberSlowInvocationEvent.THRESHOLD_NANOS
+		);
+		assertTrue(events.stream().anyMatch(evt -> evt.getInt("fiberId") == System.identityHashCode(slowFiber)));
+		assertTrue(events.stream().noneMatch(evt -> evt.getInt("fiberId") == System.identityHashCode(fastFiber)));
+	}
+
+	@Test
+	public final void testSampled()
+	throws Exception {
+		final FibersExecutor executor = new FibersExecutor(false);
+		executor.setTimingMode(FiberTimingMode.SAMPLED);
+		executor.setTimingSamplePeriod(4);
+		// the fibers invoked w/o measuring one after another get the same cached clock value
+		final StartTimes startTimes = new StartTimes();
+		final CountingFiber[] fibers = new CountingFiber[8];
+		for(int i = 0; i < fibers.length; i ++) {
+			fibers[i] = new CountingFiber(executor, 0, startTimes);
+			fibers[i].start();
+		}
+		await(() -> startTimes.repeatedCount.sum() > 10);
+		for(final CountingFiber fiber : fibers) {
+			fiber.stop();
+		}
+		assertTrue(startTimes.repeatedCount.sum() > 0);
+	}
+
+	@Test
+	public final void testLightFiberChained()
+	throws Exception {
+		final FibersExecutor executor = new FibersExecutor(false);
+		executor.setTimingMode(FiberTimingMode.CHAINED);
+		final AtomicLong lastStartTimeNanos = new AtomicLong(0);
+		final LongAdder nonMonotonicCount = new LongAdder();
+		final LightFiber fiber = executor.submit(
+			startTimeNanos -> {
+				if(lastStartTimeNanos.getAndSet(startTimeNanos) > startTimeNanos) {
+					nonMonotonicCount.increment();
+				}
+			},
+			true
+		);
+		await(() -> lastStartTimeNanos.get() > 0);
+		TimeUnit.MILLISECONDS.sleep(100);
+		fiber.stop();
+		assertTrue(lastStartTimeNanos.get() > 0);
+		assertEquals(0, nonMonotonicCount.sum());
+	}
+}
@@ -0,0 +1,129 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FibersWatchdogTest {
+
+	@Test
+	public final void test()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		fibersExecutor.setThreadCount(1);
+		final FibersWatchdog watchdog = new FibersWatchdog(
+			fibersExecutor, 100, TimeUnit.MILLISECONDS.toNanos(500), true
+		);
+		watchdog.start();
+
+		final LongAdder counter = new LongAdder();
+		fibersExecutor.submit(counter::increment);
+		final LightFiber stuckFiber = fibersExecutor.submit(
+			startTimeNanos -> {
+				try {
+					TimeUnit.SECONDS.sleep(3);
+				} catch(final InterruptedException ignored) {
+				}
+			},
+			true
+		);
+
+		TimeUnit.SECONDS.sleep(2);
+		stuckFiber.stop();
+		assertEquals(1, fibersExecutor.compensatingWorkers().size());
+		final long n = counter.sum();
+		TimeUnit.MILLISECONDS.sleep(500);
+		assertTrue(counter.sum() > n);
+
+		TimeUnit.SECONDS.sleep(2);
+		assertEquals(0, fibersExecutor.compensatingWorkers().size());
+		watchdog.close();
+	}
+
+	@Test
+	public final void testCompensationIsBounded()
+	throws Exception {
+
+		final long prevWorkerThreadsCount = workerThreadsCount();
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		fibersExecutor.setThreadCount(2);
+		final FibersWatchdog watchdog = new FibersWatchdog(
+			fibersExecutor, 50, TimeUnit.MILLISECONDS.toNanos(100), true
+		);
+		watchdog.start();
+
+		// the non-exclusive fiber blocking each worker entering it
+		final CountDownLatch releaseLatch = new CountDownLatch(1);
+		final LightFiber blockingFiber = fibersExecutor.submit(
+			startTimeNanos -> {
+				try {
+					releaseLatch.await();
+				} catch(final InterruptedException ignored) {
+				}
+			}
+		);
+
+		// many times longer than the limit + period
+		TimeUnit.SECONDS.sleep(2);
+		assertEquals(2, fibersExecutor.compensatingWorkers().size());
+		// 2 regular workers and at most 1 compensating worker per each
+		assertTrue(workerThreadsCount() - prevWorkerThreadsCount <= 4);
+
+		blockingFiber.stop();
+		releaseLatch.countDown();
+		TimeUnit.SECONDS.sleep(1);
+		assertEquals(0, fibersExecutor.compensatingWorkers().size());
+		watchdog.close();
+	}
+
+	@Test
+	public final void testShrinkWhileStuck()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		fibersExecutor.setThreadCount(2);
+		final FibersWatchdog watchdog = new FibersWatchdog(
+			fibersExecutor, 50, TimeUnit.MILLISECONDS.toNanos(100), true
+		);
+		watchdog.start();
+
+		final CountDownLatch releaseLatch = new CountDownLatch(1);
+		final LightFiber blockingFiber = fibersExecutor.submit(
+			startTimeNanos -> {
+				try {
+					releaseLatch.await();
+				} catch(final InterruptedException ignored) {
+				}
+			}
+		);
+		TimeUnit.SECONDS.sleep(2);
+		assertEquals(2, fibersExecutor.compensatingWorkers().size());
+
+		// the removed worker is still stuck, its compensating worker should be stopped
+		fibersExecutor.setThreadCount(1);
+		TimeUnit.SECONDS.sleep(1);
+		assertEquals(1, fibersExecutor.threadCount());
+		assertEquals(1, fibersExecutor.compensatingWorkers().size());
+
+		blockingFiber.stop();
+		releaseLatch.countDown();
+		TimeUnit.SECONDS.sleep(1);
+		assertEquals(0, fibersExecutor.compensatingWorkers().size());
+		watchdog.close();
+	}
+
+	private static long workerThreadsCount() {
+		return Thread
+			.getAllStackTraces()
+			.keySet()
+			.stream()
+			.filter(t -> t.getName().startsWith("fibers-executor-"))
+			.filter(t -> t.getState() != Thread.State.TERMINATED)
+			.count();
+	}
+}
@@ -0,0 +1,165 @@
+package com.github.akurilov.fiber4j;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+public class FlightRecorderEventsTest {
+
+	private static final String SLOW_INVOCATION = "com.github.akurilov.fiber4j.SlowInvocation";
+	private static final String LOCK_SKIP = "com.github.akurilov.fiber4j.LockSkip";
+	private static final String EXECUTOR_ROUND = "com.github.akurilov.fiber4j.ExecutorRound";
+	private static final String EXECUTOR_IDLE = "com.github.akurilov.fiber4j.ExecutorIdle";
+
+	private static final long SLOW_INVOCATION_NANOS = FiberSlowInvocationEvent.THRESHOLD_NANOS + 5_000_000L;
+
+	private static final class SlowFiber
+	extends FiberBase {
+
+		private final LongAdder invocationsCounter = new LongAdder();
+
+		private SlowFiber(final FibersExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected final void invokeTimed(final long startTimeNanos) {
+			while(System.nanoTime() - startTimeNanos < SLOW_INVOCATION_NANOS) {
+				LockSupport.parkNanos(1_000_000);
+			}
+			invocationsCounter.increment();
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	private static final class ContendedFiber
+	extends ExclusiveFiberBase {
+
+		private final AtomicInteger invocationsCounter = new AtomicInteger(0);
+
+		private ContendedFiber(final FibersExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected final void invokeTimedExclusively(final long startTimeNanos) {
+			if(invocationsCounter.incrementAndGet() == 1) {
+				final Thread contender = new Thread(this::invoke);
+				contender.start();
+				try {
+					contender.join();
+				} catch(final InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			}
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void testEvents()
+	throws Exception {
+
+		final List<RecordedEvent> events;
+		final SlowFiber slowFiber;
+		final ContendedFiber contendedFiber;
+		final Path recordingFile = Files.createTempFile(getClass().getSimpleName(), ".jfr");
+		try(final Recording recording = new Recording()) {
+			recording.enable(SLOW_INVOCATION).withoutThreshold();
+			recording.enable(LOCK_SKIP).withoutThreshold();
+			recording.enable(EXECUTOR_ROUND).withoutThreshold();
+			recording.enable(EXECUTOR_IDLE).withoutThreshold();
+			recording.start();
+
+			final FibersExecutor executor = new FibersExecutor(false);
+			// let the workers idle
+			TimeUnit.MILLISECONDS.sleep(100);
+			slowFiber = new SlowFiber(executor);
+			slowFiber.start();
+			final long t = System.currentTimeMillis();
+			while(slowFiber.invocationsCounter.sum() < 2 && System.currentTimeMillis() - t < 10_000) {
+				TimeUnit.MILLISECONDS.sleep(10);
+			}
+			slowFiber.stop();
+
+			contendedFiber = new ContendedFiber(executor);
+			contendedFiber.invoke();
+
+			recording.stop();
+			recording.dump(recordingFile);
+			events = RecordingFile.readAllEvents(recordingFile);
+		} finally {
+			Files.deleteIfExists(recordingFile);
+		}
+
+		final List<RecordedEvent> slowInvocationEvents = eventsOfType(events, SLOW_INVOCATION)
+			.stream()
+			.filter(evt -> evt.getInt("fiberId") == System.identityHashCode(slowFiber))
+			.collect(Collectors.toList());
+		assertFalse(slowInvocationEvents.isEmpty());
+		for(final RecordedEvent evt : slowInvocationEvents) {
+			assertEquals(slowFiber.toString(), evt.getString("fiber"));
+			assertEquals(SlowFiber.class.getName(), evt.<RecordedClass>getValue("fiberClass").getName());
+			assertTrue(evt.getDuration("invocationDuration").compareTo(Duration.ofNanos(SLOW_INVOCATION_NANOS)) >= 0);
+		}
+
+		final List<RecordedEvent> lockSkipEvents = eventsOfType(events, LOCK_SKIP);
+		assertEquals(1, lockSkipEvents.size());
+		assertEquals(contendedFiber.toString(), lockSkipEvents.get(0).getString("fiber"));
+		assertEquals(System.identityHashCode(contendedFiber), lockSkipEvents.get(0).getInt("fiberId"));
+
+		assertTrue(eventsOfType(events, EXECUTOR_ROUND).stream().anyMatch(evt -> evt.getInt("invocationsCount") > 0));
+		assertTrue(
+			eventsOfType(events, EXECUTOR_IDLE).stream().anyMatch(evt -> evt.getDuration().toMillis() >= 50)
+		);
+	}
+
+	@Test
+	public final void testSlowInvocationThresholdProperty() {
+		final String prevValue = System.getProperty(FiberSlowInvocationEvent.THRESHOLD_PROPERTY);
+		try {
+			System.clearProperty(FiberSlowInvocationEvent.THRESHOLD_PROPERTY);
+			assertEquals(Fiber.SOFT_DURATION_LIMIT_NANOS, FiberSlowInvocationEvent.thresholdNanos());
+			System.setProperty(FiberSlowInvocationEvent.THRESHOLD_PROPERTY, "12345");
+			assertEquals(12345, FiberSlowInvocationEvent.thresholdNanos());
+		} finally {
+			if(prevValue == null) {
+				System.clearProperty(FiberSlowInvocationEvent.THRESHOLD_PROPERTY);
+			} else {
+				System.setProperty(FiberSlowInvocationEvent.THRESHOLD_PROPERTY, prevValue);
+			}
+		}
+	}
+
+	private static List<RecordedEvent> eventsOfType(final List<RecordedEvent> events, final String type) {
+		return events
+			.stream()
+			.filter(evt -> type.equals(evt.getEventType().getName()))
+			.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,241 @@
+package com.github.akurilov.fiber4j;
+
+import com.github.akurilov.commons.io.Input;
+import com.github.akurilov.commons.io.Output;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FlowFibersTest {
+
+	private static final int ITEMS_COUNT = 1_000_000;
+	private static final int BUFF_CAPACITY = 1234;
+
+	private static final class FiniteInput
+	implements Input<Object> {
+
+		private final LongAdder counter;
+
+		private long remaining;
+
+		private FiniteInput(final LongAdder counter, final long count) {
+			this.counter = counter;
+			this.remaining = count;
+		}
+
+		@Override
+		public Object get()
+		throws EOFException, IOException {
+			if(remaining == 0) {
+				throw new EOFException();
+			}
+			remaining --;
+			counter.increment();
+			return new Object();
+		}
+
+		@Override
+		public int get(final List<Object> buffer, final int limit)
+		throws IOException {
+			if(remaining == 0) {
+				throw new EOFException();
+			}
+			final int n = (int) Math.min(remaining, (long) (Math.random() * limit) + 1);
+			for(int i = 0; i < n; i ++) {
+				buffer.add(new Object());
+			}
+			remaining -= n;
+			counter.add(n);
+			return n;
+		}
+
+		@Override
+		public long skip(final long count)
+		throws IOException {
+			return 0;
+		}
+
+		@Override
+		public void reset()
+		throws IOException {
+		}
+
+		@Override
+		public void close()
+		throws IOException {
+		}
+	}
+
+	private static final class SlowCountingOutput
+	implements Output<Object> {
+
+		private final LongAdder counter;
+
+		private SlowCountingOutput(final LongAdder counter) {
+			this.counter = counter;
+		}
+
+		@Override
+		public boolean put(final Object item)
+		throws IOException {
+			counter.increment();
+			return true;
+		}
+
+		@Override
+		public int put(final List<Object> buffer, final int from, final int to)
+		throws IOException {
+			final int n = (int) (Math.random() * (to - from));
+			counter.add(n);
+			return n;
+		}
+
+		@Override
+		public int put(final List<Object> buffer)
+		throws IOException {
+			return put(buffer, 0, buffer.size());
+		}
+
+		@Override
+		public Input<Object> getInput()
+		throws IOException {
+			return null;
+		}
+
+		@Override
+		public void close()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void test()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor();
+		final LongAdder inputCounter = new LongAdder();
+		final LongAdder outputCounter = new LongAdder();
+		final FlowPublisherFiber<Object> publisherFiber = new FlowPublisherFiber<>(
+			fibersExecutor, new FiniteInput(inputCounter, ITEMS_COUNT), BUFF_CAPACITY
+		);
+		final FlowSubscriberFiber<Object> subscriberFiber = new FlowSubscriberFiber<>(
+			fibersExecutor, new SlowCountingOutput(outputCounter), BUFF_CAPACITY
+		);
+		publisherFiber.subscribe(subscriberFiber);
+		subscriberFiber.start();
+		publisherFiber.start();
+		final long t = System.currentTimeMillis();
+		while(!subscriberFiber.isClosed() && System.currentTimeMillis() - t < TimeUnit.SECONDS.toMillis(60)) {
+			assertTrue(inputCounter.sum() - outputCounter.sum() <= 2 * BUFF_CAPACITY);
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertTrue(publisherFiber.isClosed());
+		assertTrue(subscriberFiber.isClosed());
+		assertEquals(ITEMS_COUNT, inputCounter.sum());
+		assertEquals(ITEMS_COUNT, outputCounter.sum());
+	}
+
+	@Test
+	public final void testCloseSignalsSerially()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final FlowPublisherFiber<Object> publisherFiber = new FlowPublisherFiber<>(
+			fibersExecutor, new FiniteInput(new LongAdder(), Long.MAX_VALUE), BUFF_CAPACITY
+		);
+		final AtomicBoolean signalingFlag = new AtomicBoolean(false);
+		final AtomicBoolean completeFlag = new AtomicBoolean(false);
+		final LongAdder violationsCounter = new LongAdder();
+		final LongAdder itemsCounter = new LongAdder();
+		publisherFiber.subscribe(
+			new Flow.Subscriber<>() {
+
+				@Override
+				public final void onSubscribe(final Flow.Subscription subscription) {
+					subscription.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public final void onNext(final Object item) {
+					if(!signalingFlag.compareAndSet(false, true) || completeFlag.get()) {
+						violationsCounter.increment();
+					}
+					itemsCounter.increment();
+					signalingFlag.set(false);
+				}
+
+				@Override
+				public final void onError(final Throwable cause) {
+					violationsCounter.increment();
+				}
+
+				@Override
+				public final void onComplete() {
+					if(!signalingFlag.compareAndSet(false, true)) {
+						violationsCounter.increment();
+					}
+					completeFlag.set(true);
+					signalingFlag.set(false);
+				}
+			}
+		);
+		publisherFiber.start();
+		final long t = System.currentTimeMillis();
+		while(itemsCounter.sum() < BUFF_CAPACITY && System.currentTimeMillis() - t < TimeUnit.SECONDS.toMillis(10)) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		publisherFiber.close();
+		final long itemsCount = itemsCounter.sum();
+		TimeUnit.MILLISECONDS.sleep(100);
+
+		assertTrue(itemsCount > 0);
+		assertTrue(completeFlag.get());
+		assertEquals(itemsCount, itemsCounter.sum());
+		assertEquals(0, violationsCounter.sum());
+	}
+
+	@Test
+	public final void testDemandExceeded()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		fibersExecutor.setFailurePolicy(FiberFailurePolicy.STOP);
+		final FlowSubscriberFiber<Object> subscriberFiber = new FlowSubscriberFiber<>(
+			fibersExecutor, new SlowCountingOutput(new LongAdder()), BUFF_CAPACITY
+		);
+		final AtomicBoolean cancelFlag = new AtomicBoolean(false);
+		subscriberFiber.onSubscribe(
+			new Flow.Subscription() {
+
+				@Override
+				public final void request(final long n) {
+				}
+
+				@Override
+				public final void cancel() {
+					cancelFlag.set(true);
+				}
+			}
+		);
+		// nothing was requested yet
+		subscriberFiber.onNext(new Object());
+		assertTrue(cancelFlag.get());
+
+		subscriberFiber.start();
+		final long t = System.currentTimeMillis();
+		while(subscriberFiber.isStarted() && System.currentTimeMillis() - t < TimeUnit.SECONDS.toMillis(10)) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		// stopped by the failure policy
+		assertTrue(subscriberFiber.isStopped());
+		assertEquals(1, fibersExecutor.getFailuresCount());
+	}
+}
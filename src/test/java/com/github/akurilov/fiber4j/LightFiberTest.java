@@ -0,0 +1,74 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LightFiberTest {
+
+	private static final int FIBERS_COUNT = 100_000;
+
+	@Test
+	public final void test()
+	throws Exception {
+
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final LongAdder invocationsCounter = new LongAdder();
+		// released after each fiber is invoked twice in average
+		final CountDownLatch invocationsLatch = new CountDownLatch(2 * FIBERS_COUNT);
+		final List<LightFiber> fibers = new ArrayList<>(FIBERS_COUNT);
+		for(int i = 0; i < FIBERS_COUNT; i ++) {
+			fibers.add(
+				fibersExecutor.submit(
+					() -> {
+						invocationsCounter.increment();
+						invocationsLatch.countDown();
+					}
+				)
+			);
+		}
+
+		final AtomicInteger concurrencyLevel = new AtomicInteger(0);
+		final AtomicInteger maxConcurrencyLevel = new AtomicInteger(0);
+		final CountDownLatch exclusiveInvocationsLatch = new CountDownLatch(1);
+		final LightFiber exclusiveFiber = fibersExecutor.submit(
+			startTimeNanos -> {
+				final int n = concurrencyLevel.incrementAndGet();
+				maxConcurrencyLevel.accumulateAndGet(n, Math::max);
+				exclusiveInvocationsLatch.countDown();
+				concurrencyLevel.decrementAndGet();
+			},
+			true
+		);
+		assertTrue(exclusiveFiber.isExclusive());
+
+		assertTrue(invocationsLatch.await(1, TimeUnit.MINUTES));
+		assertTrue(exclusiveInvocationsLatch.await(1, TimeUnit.MINUTES));
+		assertTrue(invocationsCounter.sum() > FIBERS_COUNT);
+		assertEquals(1, maxConcurrencyLevel.get());
+
+		fibers.forEach(LightFiber::stop);
+		exclusiveFiber.stop();
+		assertTrue(fibers.stream().allMatch(LightFiber::isStopped));
+		// the fiber submitted after the stop is invoked in the following rounds only
+		awaitRounds(fibersExecutor);
+		final long n = invocationsCounter.sum();
+		awaitRounds(fibersExecutor);
+		assertEquals(n, invocationsCounter.sum());
+	}
+
+	private static void awaitRounds(final FibersExecutor fibersExecutor)
+	throws InterruptedException {
+		final CountDownLatch roundsLatch = new CountDownLatch(2);
+		final LightFiber marker = fibersExecutor.submit(roundsLatch::countDown);
+		assertTrue(roundsLatch.await(1, TimeUnit.MINUTES));
+		marker.stop();
+	}
+}
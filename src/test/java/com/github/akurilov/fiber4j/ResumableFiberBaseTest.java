@@ -0,0 +1,96 @@
+package com.github.akurilov.fiber4j;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class ResumableFiberBaseTest {
+
+	private static final int COUNT_LIMIT = 1_000;
+	private static final int YIELD_PERIOD = 100;
+	private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private static final int COUNTING = 0;
+	private static final int WAITING = 1;
+	private static final int FINISHING = 2;
+
+	private static final class CountingFiber
+	extends ResumableFiberBase {
+
+		private volatile int count = 0;
+		private volatile int finishCount = 0;
+		private volatile long waitStartTimeNanos = 0;
+		private volatile long finishTimeNanos = 0;
+
+		private CountingFiber(final FibersExecutor executor, final int initialState) {
+			super(executor, initialState);
+		}
+
+		@Override
+		protected final Step step(final int stepState, final long startTimeNanos) {
+			switch(stepState) {
+				case COUNTING:
+					count ++;
+					if(count < COUNT_LIMIT) {
+						return count % YIELD_PERIOD == 0 ? yieldTo(COUNTING) : next(COUNTING);
+					}
+					waitStartTimeNanos = System.nanoTime();
+					return waitUntil(WAITING, waitStartTimeNanos + WAIT_NANOS);
+				case WAITING:
+					return next(FINISHING);
+				case FINISHING:
+					finishCount ++;
+					finishTimeNanos = System.nanoTime();
+					return done();
+				default:
+					throw new AssertionError();
+			}
+		}
+
+		@Override
+		protected final void doClose()
+		throws IOException {
+		}
+	}
+
+	@Test
+	public final void test()
+	throws Exception {
+		final FibersExecutor fibersExecutor = new FibersExecutor(false);
+		final CountingFiber fiber = new CountingFiber(fibersExecutor, COUNTING);
+		fiber.start();
+		assertTrue(fiber.await(1, TimeUnit.MINUTES));
+		assertTrue(fiber.isStopped());
+		assertEquals(COUNT_LIMIT, fiber.count);
+		assertEquals(1, fiber.finishCount);
+		assertEquals(FINISHING, fiber.stepState());
+		assertTrue(fiber.finishTimeNanos - fiber.waitStartTimeNanos >= WAIT_NANOS);
+		fiber.close();
+	}
+
+	@Test
+	public final void testBudgetSplit() {
+		final CountingFiber fiber = new CountingFiber(new FibersExecutor(false), COUNTING);
+		// the steps continue until the yield point while the budget allows
+		fiber.invokeTimedExclusively(System.nanoTime());
+		assertEquals(YIELD_PERIOD, fiber.count);
+		// the single step is executed if the budget is exceeded already
+		fiber.invokeTimedExclusively(System.nanoTime() - 2 * Fiber.SOFT_DURATION_LIMIT_NANOS);
+		assertEquals(YIELD_PERIOD + 1, fiber.count);
+		fiber.invokeTimedExclusively(System.nanoTime());
+		assertEquals(2 * YIELD_PERIOD, fiber.count);
+	}
+
+	@Test
+	public final void testDoneIsTerminal() {
+		// the fiber is not started so it fails to stop when done
+		final CountingFiber fiber = new CountingFiber(new FibersExecutor(false), FINISHING);
+		fiber.invokeTimedExclusively(System.nanoTime());
+		fiber.invokeTimedExclusively(System.nanoTime());
+		assertEquals(1, fiber.finishCount);
+		assertEquals(0, fiber.count);
+	}
+}